@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The `AsyncOutputWriter` class writes the output of the Gator Library Book
+ * Management System on a dedicated thread, so commands never wait for the
+ * disk.
+ * Rendered output is copied into a chunk of `ASYNC_OUTPUT_CHUNK_CHARS`
+ * characters; a full chunk is handed to the writer thread, which writes it to
+ * the underlying writer in one call and flushes once it has no more chunks
+ * waiting. A partly filled chunk is handed over after the flush interval, so
+ * output keeps appearing while commands are slow. All chunks are allocated up
+ * front and recycled through a free queue; a command only waits when every
+ * chunk is still queued for the disk.
+ * `flush()` is a barrier: it returns once everything written before it has
+ * reached the underlying writer. An I/O error on the writer thread is thrown
+ * by the next write, flush or close.
+ */
+public class AsyncOutputWriter extends Writer {
+
+    /**
+     * A buffer of rendered output and the number of characters it holds.
+     */
+    private static final class Chunk {
+        final char[] chars;
+        int length = 0;
+
+        Chunk(int capacity) {
+            chars = new char[capacity];
+        }
+    }
+
+    private final Writer out;
+    private final long flushIntervalMillis;
+    // Chunks waiting for the writer thread, in output order
+    private final ArrayBlockingQueue<Chunk> filledChunks;
+    private final ArrayBlockingQueue<Chunk> freeChunks;
+    private final Thread writerThread;
+    // Held for a whole write, flush or close, so a write that waits for a free
+    // chunk is not interleaved with another one
+    private final Object writeLock = new Object();
+    // The chunk being filled, guarded by lock
+    private Chunk current;
+    // Chunks handed to and written by the writer thread, guarded by lock
+    private long submittedChunks = 0;
+    private long writtenChunks = 0;
+    private volatile IOException failure = null;
+    private boolean closed = false;
+
+    /**
+     * Constructs a writer and starts its writer thread.
+     *
+     * @param out                 The writer receiving the output.
+     * @param flushIntervalMillis The longest time partial output waits before it
+     *                            is handed to the writer thread.
+     */
+    public AsyncOutputWriter(Writer out, long flushIntervalMillis) {
+        this.out = out;
+        this.flushIntervalMillis = flushIntervalMillis;
+        int chunkCount = LibraryActionConstant.ASYNC_OUTPUT_QUEUE_CHUNKS;
+        this.filledChunks = new ArrayBlockingQueue<>(chunkCount);
+        this.freeChunks = new ArrayBlockingQueue<>(chunkCount);
+        this.current = new Chunk(LibraryActionConstant.ASYNC_OUTPUT_CHUNK_CHARS);
+        for (int i = 1; i < chunkCount; i++) {
+            freeChunks.add(new Chunk(LibraryActionConstant.ASYNC_OUTPUT_CHUNK_CHARS));
+        }
+        this.writerThread = new Thread(this::drain, "gator-output-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (writeLock) {
+            synchronized (lock) {
+                ensureOpen();
+                while (len > 0) {
+                    int copied = Math.min(len, current.chars.length - current.length);
+                    System.arraycopy(cbuf, off, current.chars, current.length, copied);
+                    current.length += copied;
+                    off += copied;
+                    len -= copied;
+                    if (current.length == current.chars.length) {
+                        handOff(true);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (writeLock) {
+            synchronized (lock) {
+                ensureOpen();
+                while (len > 0) {
+                    int copied = Math.min(len, current.chars.length - current.length);
+                    str.getChars(off, off + copied, current.chars, current.length);
+                    current.length += copied;
+                    off += copied;
+                    len -= copied;
+                    if (current.length == current.chars.length) {
+                        handOff(true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until everything written so far has been written and flushed to the
+     * underlying writer.
+     *
+     * @throws IOException If the output could not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            synchronized (lock) {
+                ensureOpen();
+                awaitWritten();
+            }
+            out.flush();
+            throwIfFailed();
+        }
+    }
+
+    /**
+     * Writes out everything written so far, stops the writer thread and closes
+     * the underlying writer.
+     *
+     * @throws IOException If the output could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                awaitWritten();
+                closed = true;
+            }
+            writerThread.interrupt();
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.close();
+            throwIfFailed();
+        }
+    }
+
+    /**
+     * Hands the current chunk to the writer thread and takes a free one. The
+     * caller must hold the lock, which is released while waiting so the writer
+     * thread can make progress.
+     *
+     * @param wait True to wait for a free chunk, false to keep the current chunk
+     *             if none is free.
+     * @throws IOException If interrupted while waiting.
+     */
+    private void handOff(boolean wait) throws IOException {
+        if (current.length == 0) {
+            return;
+        }
+        try {
+            while (wait && freeChunks.isEmpty()) {
+                lock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the output writer");
+        }
+        Chunk next = current.length == 0 ? null : freeChunks.poll();
+        if (next == null) {
+            // No chunk free, or the writer thread handed this one over while we waited
+            return;
+        }
+        filledChunks.add(current);
+        submittedChunks++;
+        current = next;
+    }
+
+    /**
+     * Hands over the current chunk and waits until the writer thread has written
+     * every chunk handed to it. The caller must hold the lock.
+     */
+    private void awaitWritten() throws IOException {
+        handOff(true);
+        try {
+            while (writtenChunks < submittedChunks) {
+                lock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the output writer");
+        }
+        throwIfFailed();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Output writer is closed");
+        }
+        throwIfFailed();
+    }
+
+    private void throwIfFailed() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes chunks in order until interrupted by
+     * close, handing over partial output every flush interval.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Chunk chunk = filledChunks.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    synchronized (lock) {
+                        if (!closed) {
+                            handOff(false);
+                        }
+                    }
+                    continue;
+                }
+                try {
+                    out.write(chunk.chars, 0, chunk.length);
+                    if (filledChunks.isEmpty()) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                }
+                chunk.length = 0;
+                freeChunks.add(chunk);
+                synchronized (lock) {
+                    writtenChunks++;
+                    lock.notifyAll();
+                }
+            }
+        } catch (InterruptedException | IOException e) {
+            // Interrupted by close; handing over without waiting cannot fail otherwise
+        }
+    }
+}
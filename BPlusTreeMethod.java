@@ -0,0 +1,623 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The `BPlusTreeMethod` class is a B+tree catalog for the Gator Library Book
+ * Management System.
+ * Pages hold up to `BPLUS_PAGE_CAPACITY` book IDs in a primitive int array, so
+ * the keys binary searched at each level sit in one or two cache lines instead
+ * of one heap object per comparison, and a lookup touches only a handful of
+ * pages. Books are stored in the leaf pages only, and the leaves are linked in
+ * both directions, so PrintBooks and the other range commands seek once and
+ * then scan leaves sequentially. Pages other than the root are kept at least
+ * half full by borrowing from or merging with a sibling on deletion.
+ * Books are updated in place, as in the Red-Black Tree. The class extends
+ * `RedBlackMethod` so `GatorLibServices` can use it as a drop-in catalog; the
+ * `head` arguments of the inherited signatures are ignored. The tree has no
+ * colours or rotations, so ColorFlipCount reports that it does not apply and
+ * TreeStats reports only the shape of the tree.
+ */
+public class BPlusTreeMethod extends RedBlackMethod {
+
+    private static final int CAPACITY = LibraryActionConstant.BPLUS_PAGE_CAPACITY;
+    // Fewest keys a page other than the root may hold
+    private static final int MIN_FILL = CAPACITY / 2;
+
+    /**
+     * A page of the B+tree: a sorted array of book IDs.
+     */
+    abstract static class Page {
+        final int[] keys = new int[CAPACITY];
+        int size = 0;
+    }
+
+    /**
+     * A leaf page, holding the books of its book IDs.
+     */
+    static final class LeafPage extends Page {
+        final BookNode[] books = new BookNode[CAPACITY];
+        LeafPage previous;
+        LeafPage next;
+    }
+
+    /**
+     * An inner page. children[i] holds the book IDs below keys[i] (and at least
+     * keys[i - 1]); children[size] holds the rest.
+     */
+    static final class InnerPage extends Page {
+        final Page[] children = new Page[CAPACITY + 1];
+    }
+
+    /**
+     * The result of splitting a full page: the new right sibling and the
+     * smallest book ID under it.
+     */
+    private static final class Split {
+        final int key;
+        final Page right;
+
+        Split(int key, Page right) {
+            this.key = key;
+            this.right = right;
+        }
+    }
+
+    private Page root = new LeafPage();
+    private int height = 1;
+    private int bookCount = 0;
+
+    @Override
+    public boolean isRedBlackTree() {
+        return false;
+    }
+
+    @Override
+    public void clearCatalog() {
+        super.clearCatalog();
+        root = new LeafPage();
+        height = 1;
+        bookCount = 0;
+    }
+
+    @Override
+    public RedBlackNode searchWithInRedBlackTree(RedBlackNode head, int bookId) {
+        BookNode book = search(bookId);
+        return book == null ? null : new RedBlackNode(book);
+    }
+
+    /**
+     * Searches for several books, resuming from the leaf of the previous book:
+     * the next book ID is looked up in that leaf or the one linked after it,
+     * and only a book ID further away descends from the root again.
+     */
+    @Override
+    public BookNode[] searchSortedInRedBlackTree(int[] sortedBookIds) {
+        BookNode[] books = new BookNode[sortedBookIds.length];
+        LeafPage leaf = null;
+        for (int i = 0; i < sortedBookIds.length; i++) {
+            int bookId = sortedBookIds[i];
+            if (leaf != null && !leafSpans(leaf, bookId)) {
+                leaf = leafSpans(leaf.next, bookId) ? leaf.next : null;
+            }
+            if (leaf == null) {
+                leaf = findLeaf(bookId);
+            }
+            int index = lowerBound(leaf.keys, leaf.size, bookId);
+            books[i] = index < leaf.size && leaf.keys[index] == bookId ? leaf.books[index] : null;
+        }
+        return books;
+    }
+
+    @Override
+    public LibraryActionResult checkForBorrowInRedBlackTree(RedBlackNode head, int bookId, int patronID,
+            int priorityNumber) {
+        BookNode book = search(bookId);
+        // Reuse the Red-Black Tree's borrow logic on the book, updated in place
+        return super.checkForBorrowInRedBlackTree(book == null ? null : new RedBlackNode(book), bookId, patronID,
+                priorityNumber);
+    }
+
+    @Override
+    public LibraryActionResult returnBookActionInRedBlackTree(RedBlackNode head, int bookId, int patronID) {
+        BookNode book = search(bookId);
+        // Reuse the Red-Black Tree's return logic on the book, updated in place
+        return super.returnBookActionInRedBlackTree(book == null ? null : new RedBlackNode(book), bookId,
+                patronID);
+    }
+
+    @Override
+    public void insertInRedBlackTree(RedBlackNode newBookNode, RedBlackNode head) {
+        BookNode book = newBookNode.getBook();
+        if (search(book.getBookId()) != null) {
+            return;
+        }
+        Split split = insert(root, book.getBookId(), book);
+        if (split != null) {
+            InnerPage newRoot = new InnerPage();
+            newRoot.keys[0] = split.key;
+            newRoot.children[0] = root;
+            newRoot.children[1] = split.right;
+            newRoot.size = 1;
+            root = newRoot;
+            height++;
+        }
+        bookCount++;
+    }
+
+    @Override
+    public LibraryActionResult deleteFromRedBlackTree(int bookID, RedBlackNode head) {
+        BookNode book = search(bookID);
+        if (book == null) {
+            return LibraryActionResult.NOT_FOUND;
+        }
+        LibraryActionResult deletionResult = LibraryActionResult.deleted(book);
+        book.bumpBookVersion();
+        remove(bookID);
+        return deletionResult;
+    }
+
+    /**
+     * Removes the books of a range one at a time, in O(k log n) for k books,
+     * and returns them in a Red-Black Tree.
+     */
+    @Override
+    public RedBlackMethod extractRangeFromRedBlackTree(int startBookID, int endBookID) {
+        RedBlackMethod extracted = new RedBlackMethod();
+        ArrayList<BookNode> books = serachTheRedBlackTreeInRange(startBookID, endBookID, null, new ArrayList<>());
+        for (BookNode book : books) {
+            remove(book.getBookId());
+            extracted.insertInRedBlackTree(new RedBlackNode(book), extracted.getHeadRedBlackNode());
+        }
+        return extracted;
+    }
+
+    @Override
+    public RedBlackMethod splitRedBlackTree(int bookId) {
+        return extractRangeFromRedBlackTree(bookId, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void joinRedBlackTree(RedBlackMethod upperTree) {
+        RedBlackCursor cursor = new RedBlackCursor(upperTree);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            insertInRedBlackTree(new RedBlackNode(cursor.getBook()), null);
+        }
+        upperTree.headRedBlackNode = null;
+    }
+
+    /**
+     * Merges the other catalog in one book at a time, in O(m log n).
+     */
+    @Override
+    public void unionRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            BookNode current = search(cursor.getBook().getBookId());
+            if (current == null) {
+                insertInRedBlackTree(new RedBlackNode(cursor.getBook()), null);
+            } else {
+                replace(CatalogSetOperations.resolveConflict(current, cursor.getBook(), policy));
+            }
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books that are not in the other catalog one at a time.
+     */
+    @Override
+    public void intersectRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        ArrayList<BookNode> books = serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE, null,
+                new ArrayList<>());
+        for (BookNode book : books) {
+            RedBlackNode match = other.searchWithInRedBlackTree(other.getHeadRedBlackNode(), book.getBookId());
+            if (match == null) {
+                remove(book.getBookId());
+            } else {
+                replace(CatalogSetOperations.resolveConflict(book, match.getBook(), policy));
+            }
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books of the other catalog one at a time.
+     */
+    @Override
+    public void differenceRedBlackTree(RedBlackMethod other) {
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            if (search(cursor.getBook().getBookId()) != null) {
+                remove(cursor.getBook().getBookId());
+            }
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Collects the books within the given range by one descent to the first leaf
+     * and a sequential scan along the leaf links.
+     */
+    @Override
+    public ArrayList<BookNode> serachTheRedBlackTreeInRange(int startBookID, int endBookID, RedBlackNode head,
+            ArrayList<BookNode> books) {
+        if (startBookID > endBookID) {
+            return books;
+        }
+        LeafPage leaf = findLeaf(startBookID);
+        int i = lowerBound(leaf.keys, leaf.size, startBookID);
+        while (leaf != null) {
+            for (; i < leaf.size; i++) {
+                if (leaf.keys[i] > endBookID) {
+                    return books;
+                }
+                books.add(leaf.books[i]);
+            }
+            leaf = leaf.next;
+            i = 0;
+        }
+        return books;
+    }
+
+    /**
+     * Collects one page of a range by a sequential leaf scan, stopping as soon as
+     * the page is full.
+     */
+    @Override
+    public ArrayList<BookNode> searchTheRedBlackTreePage(int startBookID, int endBookID, int afterBookID,
+            int maxBooks) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        int firstBookID = afterBookID >= startBookID ? afterBookID + 1 : startBookID;
+        if (afterBookID == Integer.MAX_VALUE || firstBookID > endBookID) {
+            return books;
+        }
+        LeafPage leaf = findLeaf(firstBookID);
+        int i = lowerBound(leaf.keys, leaf.size, firstBookID);
+        while (leaf != null && books.size() < maxBooks) {
+            for (; i < leaf.size && books.size() < maxBooks; i++) {
+                if (leaf.keys[i] > endBookID) {
+                    return books;
+                }
+                books.add(leaf.books[i]);
+            }
+            leaf = leaf.next;
+            i = 0;
+        }
+        return books;
+    }
+
+    /**
+     * Finds the next available book with a sequential leaf scan from the given
+     * book ID.
+     */
+    @Override
+    public BookNode findNextAvailableBook(int bookID) {
+        LeafPage leaf = findLeaf(bookID);
+        int i = lowerBound(leaf.keys, leaf.size, bookID);
+        while (leaf != null) {
+            for (; i < leaf.size; i++) {
+                if (leaf.books[i].isBookAvailabilityStatus()) {
+                    return leaf.books[i];
+                }
+            }
+            leaf = leaf.next;
+            i = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Reports the shape of the B+tree: every lookup descends all of its levels,
+     * so the height is also the search depth of every book.
+     */
+    @Override
+    public RedBlackTreeStats getTreeStats() {
+        RedBlackTreeStats stats = treeStats.copyCounters();
+        stats.nodeCount = bookCount;
+        stats.height = height;
+        stats.totalNodeDepth = (long) bookCount * height;
+        return stats;
+    }
+
+    /**
+     * Searches for the book with the given ID.
+     *
+     * @param bookId The book ID to search for.
+     * @return The book, or null if it is not in the catalog.
+     */
+    private BookNode search(int bookId) {
+        LeafPage leaf = findLeaf(bookId);
+        int i = lowerBound(leaf.keys, leaf.size, bookId);
+        return i < leaf.size && leaf.keys[i] == bookId ? leaf.books[i] : null;
+    }
+
+    /**
+     * Replaces the stored book with the given one of the same ID.
+     */
+    private void replace(BookNode book) {
+        LeafPage leaf = findLeaf(book.getBookId());
+        leaf.books[lowerBound(leaf.keys, leaf.size, book.getBookId())] = book;
+    }
+
+    /**
+     * Checks whether a book ID at or above the first one looked up in a leaf
+     * would be stored in that leaf, that is before the first book of the next
+     * leaf.
+     */
+    private static boolean leafSpans(LeafPage leaf, int bookId) {
+        return leaf.next == null || bookId < leaf.next.keys[0];
+    }
+
+    /**
+     * Descends to the leaf whose key range contains the given book ID.
+     */
+    private LeafPage findLeaf(int bookId) {
+        Page page = root;
+        while (page instanceof InnerPage) {
+            InnerPage inner = (InnerPage) page;
+            page = inner.children[upperBound(inner.keys, inner.size, bookId)];
+        }
+        return (LeafPage) page;
+    }
+
+    /**
+     * Finds the index of the first key greater than or equal to the given key.
+     */
+    private static int lowerBound(int[] keys, int size, int key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the index of the first key greater than the given key.
+     */
+    private static int upperBound(int[] keys, int size, int key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Inserts a book below the given page, splitting full pages on the way back
+     * up.
+     *
+     * @param page   The page to insert into.
+     * @param bookId The ID of the book, not yet in the tree.
+     * @param book   The book.
+     * @return The split of the page, or null if it had room.
+     */
+    private Split insert(Page page, int bookId, BookNode book) {
+        if (page instanceof LeafPage) {
+            LeafPage leaf = (LeafPage) page;
+            int i = lowerBound(leaf.keys, leaf.size, bookId);
+            if (leaf.size < CAPACITY) {
+                insertIntoLeaf(leaf, i, bookId, book);
+                return null;
+            }
+            LeafPage right = new LeafPage();
+            int moveFrom = CAPACITY / 2;
+            right.size = CAPACITY - moveFrom;
+            System.arraycopy(leaf.keys, moveFrom, right.keys, 0, right.size);
+            System.arraycopy(leaf.books, moveFrom, right.books, 0, right.size);
+            Arrays.fill(leaf.books, moveFrom, CAPACITY, null);
+            leaf.size = moveFrom;
+            right.next = leaf.next;
+            right.previous = leaf;
+            if (leaf.next != null) {
+                leaf.next.previous = right;
+            }
+            leaf.next = right;
+            if (i <= moveFrom) {
+                insertIntoLeaf(leaf, i, bookId, book);
+            } else {
+                insertIntoLeaf(right, i - moveFrom, bookId, book);
+            }
+            return new Split(right.keys[0], right);
+        }
+
+        InnerPage inner = (InnerPage) page;
+        int childIndex = upperBound(inner.keys, inner.size, bookId);
+        Split childSplit = insert(inner.children[childIndex], bookId, book);
+        if (childSplit == null) {
+            return null;
+        }
+        if (inner.size < CAPACITY) {
+            insertIntoInner(inner, childIndex, childSplit.key, childSplit.right);
+            return null;
+        }
+
+        // Lay out the overfull page, then keep the lower half and push the median up
+        int[] keys = new int[CAPACITY + 1];
+        Page[] children = new Page[CAPACITY + 2];
+        System.arraycopy(inner.keys, 0, keys, 0, childIndex);
+        keys[childIndex] = childSplit.key;
+        System.arraycopy(inner.keys, childIndex, keys, childIndex + 1, inner.size - childIndex);
+        System.arraycopy(inner.children, 0, children, 0, childIndex + 1);
+        children[childIndex + 1] = childSplit.right;
+        System.arraycopy(inner.children, childIndex + 1, children, childIndex + 2, inner.size - childIndex);
+
+        int median = (CAPACITY + 1) / 2;
+        InnerPage right = new InnerPage();
+        right.size = CAPACITY - median;
+        System.arraycopy(keys, median + 1, right.keys, 0, right.size);
+        System.arraycopy(children, median + 1, right.children, 0, right.size + 1);
+        inner.size = median;
+        System.arraycopy(keys, 0, inner.keys, 0, median);
+        System.arraycopy(children, 0, inner.children, 0, median + 1);
+        Arrays.fill(inner.children, median + 1, CAPACITY + 1, null);
+        return new Split(keys[median], right);
+    }
+
+    private static void insertIntoLeaf(LeafPage leaf, int index, int bookId, BookNode book) {
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, leaf.size - index);
+        System.arraycopy(leaf.books, index, leaf.books, index + 1, leaf.size - index);
+        leaf.keys[index] = bookId;
+        leaf.books[index] = book;
+        leaf.size++;
+    }
+
+    /**
+     * Adds a separator key and the child to its right after the given child.
+     */
+    private static void insertIntoInner(InnerPage inner, int childIndex, int key, Page right) {
+        System.arraycopy(inner.keys, childIndex, inner.keys, childIndex + 1, inner.size - childIndex);
+        System.arraycopy(inner.children, childIndex + 1, inner.children, childIndex + 2, inner.size - childIndex);
+        inner.keys[childIndex] = key;
+        inner.children[childIndex + 1] = right;
+        inner.size++;
+    }
+
+    /**
+     * Removes a book that is in the tree, collapsing the root when it is left
+     * with a single child.
+     *
+     * @param bookId The ID of the book to remove.
+     */
+    private void remove(int bookId) {
+        remove(root, bookId);
+        if (root instanceof InnerPage && root.size == 0) {
+            root = ((InnerPage) root).children[0];
+            height--;
+        }
+        bookCount--;
+    }
+
+    private void remove(Page page, int bookId) {
+        if (page instanceof LeafPage) {
+            LeafPage leaf = (LeafPage) page;
+            int i = lowerBound(leaf.keys, leaf.size, bookId);
+            System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.size - i - 1);
+            System.arraycopy(leaf.books, i + 1, leaf.books, i, leaf.size - i - 1);
+            leaf.size--;
+            leaf.books[leaf.size] = null;
+            return;
+        }
+        InnerPage inner = (InnerPage) page;
+        int childIndex = upperBound(inner.keys, inner.size, bookId);
+        remove(inner.children[childIndex], bookId);
+        if (inner.children[childIndex].size < MIN_FILL) {
+            refill(inner, childIndex);
+        }
+    }
+
+    /**
+     * Brings an underfull child back to half full by borrowing a key from a
+     * sibling that can spare one, or else merging it with a sibling.
+     *
+     * @param parent     The parent of the underfull child.
+     * @param childIndex The index of the underfull child.
+     */
+    private void refill(InnerPage parent, int childIndex) {
+        Page child = parent.children[childIndex];
+        Page left = childIndex > 0 ? parent.children[childIndex - 1] : null;
+        Page right = childIndex < parent.size ? parent.children[childIndex + 1] : null;
+        if (left != null && left.size > MIN_FILL) {
+            borrowFromLeft(parent, childIndex, left, child);
+        } else if (right != null && right.size > MIN_FILL) {
+            borrowFromRight(parent, childIndex, child, right);
+        } else if (left != null) {
+            merge(parent, childIndex - 1);
+        } else if (right != null) {
+            merge(parent, childIndex);
+        }
+    }
+
+    private static void borrowFromLeft(InnerPage parent, int childIndex, Page left, Page child) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.size);
+        if (child instanceof LeafPage) {
+            LeafPage leftLeaf = (LeafPage) left;
+            LeafPage childLeaf = (LeafPage) child;
+            System.arraycopy(childLeaf.books, 0, childLeaf.books, 1, child.size);
+            childLeaf.keys[0] = leftLeaf.keys[left.size - 1];
+            childLeaf.books[0] = leftLeaf.books[left.size - 1];
+            leftLeaf.books[left.size - 1] = null;
+            parent.keys[childIndex - 1] = childLeaf.keys[0];
+        } else {
+            InnerPage leftInner = (InnerPage) left;
+            InnerPage childInner = (InnerPage) child;
+            System.arraycopy(childInner.children, 0, childInner.children, 1, child.size + 1);
+            childInner.keys[0] = parent.keys[childIndex - 1];
+            childInner.children[0] = leftInner.children[left.size];
+            leftInner.children[left.size] = null;
+            parent.keys[childIndex - 1] = leftInner.keys[left.size - 1];
+        }
+        left.size--;
+        child.size++;
+    }
+
+    private static void borrowFromRight(InnerPage parent, int childIndex, Page child, Page right) {
+        if (child instanceof LeafPage) {
+            LeafPage childLeaf = (LeafPage) child;
+            LeafPage rightLeaf = (LeafPage) right;
+            childLeaf.keys[child.size] = rightLeaf.keys[0];
+            childLeaf.books[child.size] = rightLeaf.books[0];
+            System.arraycopy(rightLeaf.keys, 1, rightLeaf.keys, 0, right.size - 1);
+            System.arraycopy(rightLeaf.books, 1, rightLeaf.books, 0, right.size - 1);
+            rightLeaf.books[right.size - 1] = null;
+            parent.keys[childIndex] = rightLeaf.keys[0];
+        } else {
+            InnerPage childInner = (InnerPage) child;
+            InnerPage rightInner = (InnerPage) right;
+            childInner.keys[child.size] = parent.keys[childIndex];
+            childInner.children[child.size + 1] = rightInner.children[0];
+            parent.keys[childIndex] = rightInner.keys[0];
+            System.arraycopy(rightInner.keys, 1, rightInner.keys, 0, right.size - 1);
+            System.arraycopy(rightInner.children, 1, rightInner.children, 0, right.size);
+            rightInner.children[right.size] = null;
+        }
+        right.size--;
+        child.size++;
+    }
+
+    /**
+     * Merges the child at the given index with its right sibling and drops the
+     * separator between them from the parent.
+     *
+     * @param parent    The parent of the two children.
+     * @param leftIndex The index of the left child.
+     */
+    private static void merge(InnerPage parent, int leftIndex) {
+        Page left = parent.children[leftIndex];
+        Page right = parent.children[leftIndex + 1];
+        if (left instanceof LeafPage) {
+            LeafPage leftLeaf = (LeafPage) left;
+            LeafPage rightLeaf = (LeafPage) right;
+            System.arraycopy(rightLeaf.keys, 0, leftLeaf.keys, left.size, right.size);
+            System.arraycopy(rightLeaf.books, 0, leftLeaf.books, left.size, right.size);
+            left.size += right.size;
+            leftLeaf.next = rightLeaf.next;
+            if (rightLeaf.next != null) {
+                rightLeaf.next.previous = leftLeaf;
+            }
+        } else {
+            InnerPage leftInner = (InnerPage) left;
+            InnerPage rightInner = (InnerPage) right;
+            leftInner.keys[left.size] = parent.keys[leftIndex];
+            System.arraycopy(rightInner.keys, 0, leftInner.keys, left.size + 1, right.size);
+            System.arraycopy(rightInner.children, 0, leftInner.children, left.size + 1, right.size + 1);
+            left.size += right.size + 1;
+        }
+        System.arraycopy(parent.keys, leftIndex + 1, parent.keys, leftIndex, parent.size - leftIndex - 1);
+        System.arraycopy(parent.children, leftIndex + 2, parent.children, leftIndex + 1,
+                parent.size - leftIndex - 1);
+        parent.children[parent.size] = null;
+        parent.size--;
+    }
+}
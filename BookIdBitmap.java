@@ -0,0 +1,344 @@
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The `BookIdBitmap` class is a compressed bitmap of book IDs in the Gator
+ * Library Book Management System, used to answer existence, closest-ID and
+ * range-count questions without descending the catalog tree.
+ * It is laid out like a roaring bitmap: the ID space is cut into chunks of
+ * 65536 IDs keyed by the high 16 bits of the ID, and each non-empty chunk
+ * keeps its low 16 bits in a container. A chunk with at most
+ * `BITMAP_ARRAY_CONTAINER_MAX` IDs uses a sorted char array; a denser chunk
+ * uses a fixed 8 KB bitset, so dense IDs cost about one bit each and are
+ * scanned a 64-bit word at a time. IDs are stored with their sign bit flipped,
+ * so the unsigned order of the chunks is the order of the (signed) book IDs.
+ */
+public class BookIdBitmap {
+
+    private static final int ARRAY_MAX = LibraryActionConstant.BITMAP_ARRAY_CONTAINER_MAX;
+
+    /**
+     * The low 16 bits of the IDs of one chunk.
+     */
+    abstract static class Container {
+        int cardinality = 0;
+
+        abstract boolean contains(int low);
+
+        /**
+         * Adds a value, returning the container now holding the chunk.
+         */
+        abstract Container add(int low);
+
+        /**
+         * Removes a value, returning the container now holding the chunk.
+         */
+        abstract Container remove(int low);
+
+        /**
+         * Gets the smallest value at or above `low`, or -1.
+         */
+        abstract int nextValue(int low);
+
+        /**
+         * Gets the largest value at or below `low`, or -1.
+         */
+        abstract int previousValue(int low);
+
+        /**
+         * Counts the values at or below `low`.
+         */
+        abstract int rank(int low);
+    }
+
+    /**
+     * A sparse chunk: its values in a sorted array.
+     */
+    static final class ArrayContainer extends Container {
+        char[] values = new char[4];
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, cardinality, (char) low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, 2 * cardinality));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = (char) low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int nextValue(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            index = index >= 0 ? index : -index - 1;
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        int previousValue(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            index = index >= 0 ? index : -index - 2;
+            return index >= 0 ? values[index] : -1;
+        }
+
+        @Override
+        int rank(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    /**
+     * A dense chunk: one bit per possible value.
+     */
+    static final class BitmapContainer extends Container {
+        final long[] words = new long[1 << 10];
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            long word = words[low >>> 6];
+            words[low >>> 6] = word | (1L << low);
+            cardinality += (int) (~word >>> low) & 1;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            long word = words[low >>> 6];
+            words[low >>> 6] = word & ~(1L << low);
+            cardinality -= (int) (word >>> low) & 1;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        int nextValue(int low) {
+            int wordIndex = low >>> 6;
+            long word = words[wordIndex] & (-1L << low);
+            while (word == 0) {
+                if (++wordIndex == words.length) {
+                    return -1;
+                }
+                word = words[wordIndex];
+            }
+            return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int previousValue(int low) {
+            int wordIndex = low >>> 6;
+            long word = words[wordIndex] & (-1L >>> (63 - (low & 63)));
+            while (word == 0) {
+                if (--wordIndex < 0) {
+                    return -1;
+                }
+                word = words[wordIndex];
+            }
+            return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+
+        @Override
+        int rank(int low) {
+            int count = 0;
+            int lastWord = low >>> 6;
+            for (int i = 0; i < lastWord; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            return count + Long.bitCount(words[lastWord] & (-1L >>> (63 - (low & 63))));
+        }
+
+        private ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[cardinality];
+            int low = nextValue(0);
+            for (int i = 0; i < cardinality; i++) {
+                array.values[i] = (char) low;
+                low = i + 1 < cardinality ? nextValue(low + 1) : -1;
+            }
+            array.cardinality = cardinality;
+            return array;
+        }
+    }
+
+    // highKeys[i] is the high 16 bits of the IDs in containers[i], sorted
+    private char[] highKeys = new char[4];
+    private Container[] containers = new Container[4];
+    private int chunkCount = 0;
+
+    /**
+     * Sets whether an ID is in the bitmap.
+     *
+     * @param bookId  The book ID.
+     * @param present True to add the ID, false to remove it.
+     */
+    public synchronized void set(int bookId, boolean present) {
+        int key = bookId ^ Integer.MIN_VALUE;
+        char high = (char) (key >>> 16);
+        int index = Arrays.binarySearch(highKeys, 0, chunkCount, high);
+        if (!present) {
+            if (index >= 0) {
+                containers[index] = containers[index].remove(key & 0xFFFF);
+                if (containers[index].cardinality == 0) {
+                    System.arraycopy(highKeys, index + 1, highKeys, index, chunkCount - index - 1);
+                    System.arraycopy(containers, index + 1, containers, index, chunkCount - index - 1);
+                    containers[--chunkCount] = null;
+                }
+            }
+            return;
+        }
+        if (index < 0) {
+            index = -index - 1;
+            if (chunkCount == highKeys.length) {
+                highKeys = Arrays.copyOf(highKeys, 2 * chunkCount);
+                containers = Arrays.copyOf(containers, 2 * chunkCount);
+            }
+            System.arraycopy(highKeys, index, highKeys, index + 1, chunkCount - index);
+            System.arraycopy(containers, index, containers, index + 1, chunkCount - index);
+            highKeys[index] = high;
+            containers[index] = new ArrayContainer();
+            chunkCount++;
+        }
+        containers[index] = containers[index].add(key & 0xFFFF);
+    }
+
+    /**
+     * Replaces the content of the bitmap, for example after the catalog changed
+     * in bulk.
+     *
+     * @param books     Every book in the catalog.
+     * @param available True to keep only the available books, false to keep all.
+     */
+    public synchronized void rebuild(Collection<BookNode> books, boolean available) {
+        highKeys = new char[4];
+        containers = new Container[4];
+        chunkCount = 0;
+        for (BookNode book : books) {
+            if (!available || book.isBookAvailabilityStatus()) {
+                set(book.getBookId(), true);
+            }
+        }
+    }
+
+    /**
+     * Checks whether an ID is in the bitmap.
+     *
+     * @param bookId The book ID.
+     * @return True if the ID is present.
+     */
+    public synchronized boolean contains(int bookId) {
+        int key = bookId ^ Integer.MIN_VALUE;
+        int index = Arrays.binarySearch(highKeys, 0, chunkCount, (char) (key >>> 16));
+        return index >= 0 && containers[index].contains(key & 0xFFFF);
+    }
+
+    /**
+     * Gets the smallest ID in the bitmap at or above the given ID.
+     *
+     * @param bookId The book ID to start from.
+     * @return The ID, or null if there is none.
+     */
+    public synchronized Integer ceiling(int bookId) {
+        int key = bookId ^ Integer.MIN_VALUE;
+        int index = Arrays.binarySearch(highKeys, 0, chunkCount, (char) (key >>> 16));
+        int low = key & 0xFFFF;
+        if (index < 0) {
+            index = -index - 1;
+            low = 0;
+        }
+        for (; index < chunkCount; index++, low = 0) {
+            int value = containers[index].nextValue(low);
+            if (value >= 0) {
+                return ((highKeys[index] << 16) | value) ^ Integer.MIN_VALUE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the largest ID in the bitmap at or below the given ID.
+     *
+     * @param bookId The book ID to start from.
+     * @return The ID, or null if there is none.
+     */
+    public synchronized Integer floor(int bookId) {
+        int key = bookId ^ Integer.MIN_VALUE;
+        int index = Arrays.binarySearch(highKeys, 0, chunkCount, (char) (key >>> 16));
+        int low = key & 0xFFFF;
+        if (index < 0) {
+            index = -index - 2;
+            low = 0xFFFF;
+        }
+        for (; index >= 0; index--, low = 0xFFFF) {
+            int value = containers[index].previousValue(low);
+            if (value >= 0) {
+                return ((highKeys[index] << 16) | value) ^ Integer.MIN_VALUE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts the IDs in the bitmap within a range.
+     *
+     * @param startBookID The smallest ID of the range.
+     * @param endBookID   The largest ID of the range.
+     * @return The number of IDs in the range.
+     */
+    public synchronized int rangeCardinality(int startBookID, int endBookID) {
+        if (startBookID > endBookID) {
+            return 0;
+        }
+        return countUpTo(endBookID) - (startBookID == Integer.MIN_VALUE ? 0 : countUpTo(startBookID - 1));
+    }
+
+    /**
+     * Counts the IDs at or below the given ID, whole chunks by their cardinality
+     * and the last one by its rank.
+     */
+    private int countUpTo(int bookId) {
+        int key = bookId ^ Integer.MIN_VALUE;
+        char high = (char) (key >>> 16);
+        int count = 0;
+        for (int i = 0; i < chunkCount && highKeys[i] <= high; i++) {
+            count += highKeys[i] < high ? containers[i].cardinality : containers[i].rank(key & 0xFFFF);
+        }
+        return count;
+    }
+}
@@ -1,18 +1,36 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * The `BookNode` class represents a node in the Gator Library Book Management
  * System. Each node
  * corresponds to a book and contains information such as the book ID, title,
  * author, availability
  * status, borrower ID, and a priority queue for book reservations.
+ * Author names are interned, so books by the same author share one instance of
+ * the name; interned strings are reclaimed once no book refers to them.
+ * Titles stay plain strings rather than offsets into a shared byte arena: the
+ * JDK already stores a Latin-1 title at one byte per character, and an arena
+ * would keep the bytes of deleted books until it was compacted.
  */
 public class BookNode {
 
+    // Source of version stamps, unique across all books so a re-inserted book ID
+    // never reuses the stamp of a deleted one
+    private static final AtomicLong BOOK_VERSION_SEQUENCE = new AtomicLong();
+
     private int bookId;
     private String bookName;
     private String bookAuthorName;
     private boolean bookAvailabilityStatus;
     private int bookBorrowedBy;
     private BookPriorityQueue bookPriorityQueue;
+    private long bookVersion;
 
     /**
      * Constructor to initialize a new `BookNode` with the provided information.
@@ -25,10 +43,34 @@ public class BookNode {
     public BookNode(int bookId, String bookName, String bookAuthorName, boolean bookAvailabilityStatus) {
         this.bookId = bookId;
         this.bookName = bookName;
-        this.bookAuthorName = bookAuthorName;
+        setBookAuthorName(bookAuthorName);
         this.bookAvailabilityStatus = bookAvailabilityStatus;
         this.bookBorrowedBy = -1;
         this.bookPriorityQueue = new BookPriorityQueue();
+        this.bookVersion = BOOK_VERSION_SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * Constructs an empty book whose state is filled in by `readFrom`.
+     */
+    private BookNode() {
+    }
+
+    /**
+     * Copy constructor creating an independent `BookNode` with the same state as
+     * the given one, including its own copy of the reservation queue.
+     *
+     * @param other The book to copy.
+     */
+    public BookNode(BookNode other) {
+        this.bookId = other.bookId;
+        this.bookName = other.bookName;
+        this.bookAuthorName = other.bookAuthorName;
+        this.bookAvailabilityStatus = other.bookAvailabilityStatus;
+        this.bookBorrowedBy = other.bookBorrowedBy;
+        this.bookPriorityQueue = new BookPriorityQueue();
+        this.bookPriorityQueue.waitListHeap.addAll(other.bookPriorityQueue.waitListHeap);
+        this.bookVersion = other.bookVersion;
     }
 
     // Getter and Setter methods for all fields
@@ -54,7 +96,7 @@ public class BookNode {
     }
 
     public void setBookAuthorName(String bookAuthorName) {
-        this.bookAuthorName = bookAuthorName;
+        this.bookAuthorName = bookAuthorName == null ? null : bookAuthorName.intern();
     }
 
     public boolean isBookAvailabilityStatus() {
@@ -77,6 +119,96 @@ public class BookNode {
         return bookPriorityQueue;
     }
 
+    public long getBookVersion() {
+        return bookVersion;
+    }
+
+    /**
+     * Gives the book a new version stamp. Called on every borrow, return,
+     * reservation and delete so cached renderings of the old state are ignored.
+     */
+    public void bumpBookVersion() {
+        this.bookVersion = BOOK_VERSION_SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * Writes the state of the book, except its ID, to a `BookSegment` record.
+     * The title and author are written as UTF-8 text, so the record holds the
+     * whole book and a flushed book keeps nothing on the heap.
+     *
+     * @param out The record being written.
+     * @throws IOException If the record cannot be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        writeText(out, bookName);
+        writeText(out, bookAuthorName);
+        out.writeBoolean(bookAvailabilityStatus);
+        out.writeInt(bookBorrowedBy);
+        out.writeLong(bookVersion);
+        out.writeInt(bookPriorityQueue.waitListHeap.size());
+        // Heap order is kept as-is so the waitlist reads back identical
+        for (BookWaitList patron : bookPriorityQueue.waitListHeap) {
+            out.writeInt(patron.getPatronId());
+            out.writeInt(patron.getPriorityNumber());
+            out.writeLong(patron.getTimeOfReservation().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(patron.getTimeOfReservation().getNano());
+        }
+    }
+
+    /**
+     * Reads a book back from a `BookSegment` record written by `writeTo`. The
+     * book keeps its version stamp, so output rendered from the written state
+     * stays valid.
+     *
+     * @param bookId The ID of the book.
+     * @param in     The record being read.
+     * @return The book.
+     * @throws IOException If the record cannot be read.
+     */
+    static BookNode readFrom(int bookId, DataInput in) throws IOException {
+        BookNode book = new BookNode();
+        book.bookId = bookId;
+        book.bookName = readText(in);
+        String bookAuthorName = readText(in);
+        book.bookAuthorName = bookAuthorName == null ? null : bookAuthorName.intern();
+        book.bookAvailabilityStatus = in.readBoolean();
+        book.bookBorrowedBy = in.readInt();
+        book.bookVersion = in.readLong();
+        book.bookPriorityQueue = new BookPriorityQueue();
+        int waitListSize = in.readInt();
+        for (int i = 0; i < waitListSize; i++) {
+            int patronId = in.readInt();
+            int priorityNumber = in.readInt();
+            LocalDateTime timeOfReservation = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(),
+                    ZoneOffset.UTC);
+            book.bookPriorityQueue.waitListHeap.add(new BookWaitList(patronId, priorityNumber, timeOfReservation));
+        }
+        return book;
+    }
+
+    // Writes the UTF-8 length and bytes of the text, length -1 for null. Unlike
+    // writeUTF this has no 64 KB limit.
+    private static void writeText(DataOutput out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Reads text written by writeText
+    private static String readText(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     /**
      * Returns a string representation of the `BookNode` object, useful for
      * debugging.
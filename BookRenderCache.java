@@ -0,0 +1,108 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The `BookRenderCache` class caches the rendered PrintBook output of books in
+ * the Gator Library Book Management System. Each entry is keyed by book ID and
+ * remembers the version stamp of the `BookNode` it was rendered from; an entry
+ * whose stamp no longer matches the book is treated as a miss and re-rendered.
+ * The cache is bounded by the total number of cached characters and evicts the
+ * least recently used entries first.
+ */
+public class BookRenderCache {
+
+    /**
+     * A rendered book together with the version it was rendered from.
+     */
+    private static final class RenderedBook {
+        final long bookVersion;
+        final char[] rendered;
+
+        RenderedBook(long bookVersion, char[] rendered) {
+            this.bookVersion = bookVersion;
+            this.rendered = rendered;
+        }
+    }
+
+    // Entries in least-recently-used first order
+    private final LinkedHashMap<Integer, RenderedBook> renderedBooks = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxCachedChars;
+    private long cachedChars = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Constructs a render cache holding at most the given number of characters.
+     *
+     * @param maxCachedChars The memory bound of the cache, in characters.
+     */
+    public BookRenderCache(long maxCachedChars) {
+        this.maxCachedChars = maxCachedChars;
+    }
+
+    /**
+     * Gets the cached rendering of the book if it was rendered from the book's
+     * current version.
+     *
+     * @param book The book to look up.
+     * @return The rendered output, or null on a miss.
+     */
+    public char[] get(BookNode book) {
+        RenderedBook cached = renderedBooks.get(book.getBookId());
+        if (cached != null && cached.bookVersion == book.getBookVersion()) {
+            hitCount++;
+            return cached.rendered;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Caches the rendering of the book's current version, evicting the least
+     * recently used entries until the cache fits its memory bound.
+     *
+     * @param book     The book that was rendered.
+     * @param rendered The rendered output.
+     */
+    public void put(BookNode book, char[] rendered) {
+        if (rendered.length > maxCachedChars) {
+            return;
+        }
+        RenderedBook previous = renderedBooks.put(book.getBookId(),
+                new RenderedBook(book.getBookVersion(), rendered));
+        if (previous != null) {
+            cachedChars -= previous.rendered.length;
+        }
+        cachedChars += rendered.length;
+        Iterator<Map.Entry<Integer, RenderedBook>> eldest = renderedBooks.entrySet().iterator();
+        while (cachedChars > maxCachedChars && eldest.hasNext()) {
+            cachedChars -= eldest.next().getValue().rendered.length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops the cached rendering of a book, used when the book is deleted.
+     *
+     * @param bookId The ID of the book.
+     */
+    public void invalidate(int bookId) {
+        RenderedBook previous = renderedBooks.remove(bookId);
+        if (previous != null) {
+            cachedChars -= previous.rendered.length;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getCachedChars() {
+        return cachedChars;
+    }
+}
@@ -0,0 +1,446 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The `BookSegment` class is an immutable, sorted run of book records on disk,
+ * one tier of the `TieredRedBlackMethod` catalog of the Gator Library Book
+ * Management System.
+ * Records are written in ascending book ID order and grouped in blocks of
+ * `SEGMENT_BLOCK_BOOKS`. Only the first book ID and file offset of each block
+ * stay in memory, as a sparse index, so finding a book binary searches the
+ * index and reads a single block. A Bloom filter of every book ID in the
+ * segment, at `SEGMENT_BLOOM_BITS_PER_BOOK` bits per record, rules out most
+ * IDs the segment does not hold without reading anything. A record is either
+ * a book or a deletion, which hides the book ID in older segments.
+ * A segment is never modified once written, and blocks are read with
+ * positional reads, so any number of threads may read one at a time.
+ *
+ * File format: records of (bookId, length, payload), where the payload is the
+ * book as written by `BookNode.writeTo` and a deletion has length -1 and no
+ * payload.
+ */
+public class BookSegment {
+
+    private static final int BLOCK_BOOKS = LibraryActionConstant.SEGMENT_BLOCK_BOOKS;
+    // Record length marking a deleted book
+    private static final int DELETED = -1;
+    // Odd multipliers hashing book IDs to the bits of the Bloom filter
+    private static final long[] BLOOM_SEEDS = new long[LibraryActionConstant.SEGMENT_BLOOM_HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(LibraryActionConstant.SEGMENT_BLOOM_SEED);
+        for (int i = 0; i < BLOOM_SEEDS.length; i++) {
+            BLOOM_SEEDS[i] = random.nextLong() | 1;
+        }
+    }
+
+    // Tier of the segment: 0 for a flushed memtable, one above its inputs for a merge
+    final int level;
+    final int recordCount;
+    private final File file;
+    private final FileChannel channel;
+    // Block i holds the records from blockFirstIds[i] on, stored from
+    // blockOffsets[i]; blockOffsets[blockCount] is the end of the file
+    private final int[] blockFirstIds;
+    private final long[] blockOffsets;
+    private final int blockCount;
+    private final long[] bloomBits;
+    private final int bloomShift;
+
+    private BookSegment(File file, int level, int recordCount, int[] blockFirstIds, long[] blockOffsets,
+            int blockCount, long[] bloomBits, int bloomShift) throws IOException {
+        this.file = file;
+        this.level = level;
+        this.recordCount = recordCount;
+        this.blockFirstIds = blockFirstIds;
+        this.blockOffsets = blockOffsets;
+        this.blockCount = blockCount;
+        this.bloomBits = bloomBits;
+        this.bloomShift = bloomShift;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Writes a new segment, record by record, in ascending book ID order.
+     */
+    static final class Builder {
+        private final File file;
+        private final int level;
+        private final DataOutputStream out;
+        // Scratch buffer each book is written to first, to learn its length
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private final long[] bloomBits;
+        private final int bloomShift;
+        private int[] blockFirstIds = new int[16];
+        private long[] blockOffsets = new long[17];
+        private int blockCount = 0;
+        private int recordCount = 0;
+        // Bytes written so far, the file offset of the next record
+        private long position = 0;
+
+        /**
+         * Creates the segment file.
+         *
+         * @param file            The file of the segment.
+         * @param level           The tier of the segment.
+         * @param expectedRecords The most records that will be appended, sizing
+         *                        the Bloom filter.
+         * @throws IOException If the file cannot be created.
+         */
+        Builder(File file, int level, long expectedRecords) throws IOException {
+            this.file = file;
+            this.level = level;
+            long wantedBits = Math.max(64, expectedRecords * LibraryActionConstant.SEGMENT_BLOOM_BITS_PER_BOOK);
+            // A power of two, so each hash is a multiply and a shift
+            int bloomBitsLog = Math.min(36, 64 - Long.numberOfLeadingZeros(wantedBits - 1));
+            this.bloomBits = new long[(int) ((1L << bloomBitsLog) >>> 6)];
+            this.bloomShift = 64 - bloomBitsLog;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        }
+
+        /**
+         * Appends a book, or the deletion of a book ID.
+         *
+         * @param bookId The book ID, greater than every ID appended before.
+         * @param book   The book, or null for a deletion.
+         * @throws IOException If the record cannot be written.
+         */
+        void append(int bookId, BookNode book) throws IOException {
+            startRecord(bookId);
+            if (book == null) {
+                out.writeInt(DELETED);
+                position += 4;
+                return;
+            }
+            record.reset();
+            book.writeTo(recordOut);
+            out.writeInt(record.size());
+            record.writeTo(out);
+            position += 4 + record.size();
+        }
+
+        /**
+         * Appends the record a cursor is positioned on, without decoding it.
+         *
+         * @param cursor The cursor, positioned on a record whose book ID is
+         *               greater than every ID appended before.
+         * @throws IOException If the record cannot be written.
+         */
+        void append(Cursor cursor) throws IOException {
+            startRecord(cursor.getBookId());
+            int length = cursor.lengths[cursor.index];
+            out.writeInt(length);
+            if (length != DELETED) {
+                out.write(cursor.block, cursor.offsets[cursor.index], length);
+            }
+            position += 4 + Math.max(0, length);
+        }
+
+        /**
+         * Closes the file and opens it as a segment.
+         *
+         * @return The segment.
+         * @throws IOException If the file cannot be written or opened.
+         */
+        BookSegment finish() throws IOException {
+            out.close();
+            blockOffsets[blockCount] = position;
+            return new BookSegment(file, level, recordCount, Arrays.copyOf(blockFirstIds, blockCount),
+                    Arrays.copyOf(blockOffsets, blockCount + 1), blockCount, bloomBits, bloomShift);
+        }
+
+        /**
+         * Closes and deletes the unfinished segment file.
+         */
+        void abandon() {
+            try {
+                out.close();
+            } catch (IOException e) {
+
+            }
+            file.delete();
+        }
+
+        /**
+         * Writes the book ID of a record, starting a new block every
+         * `SEGMENT_BLOCK_BOOKS` records, and adds it to the Bloom filter.
+         */
+        private void startRecord(int bookId) throws IOException {
+            if (recordCount % BLOCK_BOOKS == 0) {
+                if (blockCount == blockFirstIds.length) {
+                    blockFirstIds = Arrays.copyOf(blockFirstIds, 2 * blockCount);
+                    blockOffsets = Arrays.copyOf(blockOffsets, 2 * blockCount + 1);
+                }
+                blockFirstIds[blockCount] = bookId;
+                blockOffsets[blockCount] = position;
+                blockCount++;
+            }
+            for (long seed : BLOOM_SEEDS) {
+                long bit = (bookId * seed) >>> bloomShift;
+                bloomBits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            recordCount++;
+            out.writeInt(bookId);
+            position += 4;
+        }
+    }
+
+    /**
+     * An ordered cursor over the records of the segment, reading one block at a
+     * time.
+     */
+    final class Cursor {
+        private int blockIndex = -1;
+        private byte[] block;
+        // Book ID, payload offset within the block and payload length of each
+        // record of the block
+        private final int[] bookIds = new int[BLOCK_BOOKS];
+        private final int[] offsets = new int[BLOCK_BOOKS];
+        private final int[] lengths = new int[BLOCK_BOOKS];
+        private int size = 0;
+        // Record the cursor is positioned on, size when exhausted
+        private int index = 0;
+
+        /**
+         * Positions the cursor on the first record whose book ID is greater than
+         * or equal to the given book ID.
+         *
+         * @param bookId The book ID to seek to.
+         * @return True if such a record exists.
+         */
+        boolean seek(int bookId) {
+            int first = Math.max(0, lastBlockStartingAtOrBelow(bookId));
+            if (first >= blockCount) {
+                size = index = 0;
+                return false;
+            }
+            load(first);
+            while (index < size && bookIds[index] < bookId) {
+                index++;
+            }
+            if (index == size && blockIndex + 1 < blockCount) {
+                // Every record of the block is smaller, the next block starts above
+                load(blockIndex + 1);
+            }
+            return isValid();
+        }
+
+        boolean isValid() {
+            return index < size;
+        }
+
+        int getBookId() {
+            return bookIds[index];
+        }
+
+        /**
+         * Checks whether the record is the deletion of its book ID.
+         *
+         * @return True for a deletion, false for a book.
+         */
+        boolean isDeleted() {
+            return lengths[index] == DELETED;
+        }
+
+        /**
+         * Decodes the book of the record.
+         *
+         * @return A new `BookNode` holding the book.
+         */
+        BookNode getBook() {
+            try {
+                return BookNode.readFrom(bookIds[index],
+                        new DataInputStream(new ByteArrayInputStream(block, offsets[index], lengths[index])));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Moves the cursor to the record with the next higher book ID.
+         *
+         * @return True if the cursor is still positioned on a record.
+         */
+        boolean next() {
+            if (!isValid()) {
+                return false;
+            }
+            if (++index == size && blockIndex + 1 < blockCount) {
+                load(blockIndex + 1);
+            }
+            return isValid();
+        }
+
+        /**
+         * Reads a block and splits it into its records.
+         */
+        private void load(int blockIndex) {
+            this.blockIndex = blockIndex;
+            block = readBlock(blockIndex);
+            ByteBuffer records = ByteBuffer.wrap(block);
+            size = 0;
+            index = 0;
+            int position = 0;
+            while (position < block.length) {
+                bookIds[size] = records.getInt(position);
+                lengths[size] = records.getInt(position + 4);
+                offsets[size] = position + 8;
+                position += 8 + Math.max(0, lengths[size]);
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Checks the Bloom filter for a book ID.
+     *
+     * @param bookId The book ID.
+     * @return False if the segment certainly holds no record of the ID.
+     */
+    boolean mightContain(int bookId) {
+        for (long seed : BLOOM_SEEDS) {
+            long bit = (bookId * seed) >>> bloomShift;
+            if ((bloomBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the record of a book ID, reading at most one block.
+     *
+     * @param bookId The book ID.
+     * @return A cursor positioned on the record, or null if the segment holds no
+     *         record of the ID.
+     */
+    Cursor find(int bookId) {
+        if (!mightContain(bookId)) {
+            return null;
+        }
+        Cursor cursor = new Cursor();
+        return cursor.seek(bookId) && cursor.getBookId() == bookId ? cursor : null;
+    }
+
+    /**
+     * Creates an unpositioned cursor over the segment.
+     *
+     * @return The cursor.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Closes and deletes the segment file once the segment has been replaced.
+     */
+    void delete() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+
+        }
+        file.delete();
+    }
+
+    /**
+     * Merges segments into one segment of the next tier. Where several segments
+     * hold a record of the same book ID, only the newest record is kept.
+     *
+     * @param file        The file of the new segment.
+     * @param segments    The segments to merge, oldest first.
+     * @param dropDeleted True to leave out deletions, when no older segment is
+     *                    left for them to hide books in.
+     * @return The new segment.
+     * @throws IOException If the new segment cannot be written.
+     */
+    static BookSegment merge(File file, List<BookSegment> segments, boolean dropDeleted) throws IOException {
+        Cursor[] cursors = new Cursor[segments.size()];
+        long expectedRecords = 0;
+        int level = 0;
+        for (int i = 0; i < cursors.length; i++) {
+            // Newest first, so the first cursor holding a book ID has its newest record
+            BookSegment segment = segments.get(cursors.length - 1 - i);
+            expectedRecords += segment.recordCount;
+            level = Math.max(level, segment.level + 1);
+            cursors[i] = segment.cursor();
+            cursors[i].seek(Integer.MIN_VALUE);
+        }
+        Builder builder = new Builder(file, level, expectedRecords);
+        try {
+            while (true) {
+                Cursor newest = null;
+                for (Cursor cursor : cursors) {
+                    if (cursor.isValid() && (newest == null || cursor.getBookId() < newest.getBookId())) {
+                        newest = cursor;
+                    }
+                }
+                if (newest == null) {
+                    return builder.finish();
+                }
+                int bookId = newest.getBookId();
+                if (!dropDeleted || !newest.isDeleted()) {
+                    builder.append(newest);
+                }
+                for (Cursor cursor : cursors) {
+                    if (cursor.isValid() && cursor.getBookId() == bookId) {
+                        cursor.next();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            builder.abandon();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the index of the last block whose first book ID is at or below the
+     * given book ID, or -1 if there is none.
+     */
+    private int lastBlockStartingAtOrBelow(int bookId) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockFirstIds[middle] <= bookId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Reads the bytes of a block with a positional read.
+     */
+    private byte[] readBlock(int blockIndex) {
+        long start = blockOffsets[blockIndex];
+        ByteBuffer buffer = ByteBuffer.allocate((int) (blockOffsets[blockIndex + 1] - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("Segment " + file + " is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer.array();
+    }
+}
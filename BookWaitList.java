@@ -28,6 +28,20 @@ public class BookWaitList {
         this.timeOfReservation = getCurrentTime();
     }
 
+    /**
+     * Constructs a `BookWaitList` object with an explicit reservation time, used
+     * when a waitlist is restored from a snapshot rather than reserved live.
+     *
+     * @param patronId          The ID of the patron waiting in the reservation queue.
+     * @param priorityNumber    The priority number assigned to the patron.
+     * @param timeOfReservation The time the reservation was originally made.
+     */
+    public BookWaitList(int patronId, int priorityNumber, LocalDateTime timeOfReservation) {
+        this.patronId = patronId;
+        this.priorityNumber = priorityNumber;
+        this.timeOfReservation = timeOfReservation;
+    }
+
     // Getter methods for patronId, priorityNumber, and timeOfReservation
     public int getPatronId() {
         return patronId;
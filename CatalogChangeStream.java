@@ -0,0 +1,297 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * The `CatalogChangeStream` class publishes the changes made to a catalog of
+ * the Gator Library Book Management System as a stream of small events, for
+ * systems that need to follow the catalog without parsing its output.
+ * Every insert, borrow, reservation, return, allotment, pick-up, hold expiry
+ * and deletion publishes one event into a ring of `CDC_RING_CAPACITY` slots
+ * allocated up front as parallel primitive arrays, so publishing allocates
+ * nothing. Each subscriber keeps its own position in the ring and reads at its
+ * own pace; the catalog never waits for a subscriber. A subscriber that falls
+ * more than a full ring behind has lost the oldest events: it skips to the
+ * oldest event still in the ring and counts the missed ones, and it reports
+ * itself slow once it is half a ring behind.
+ * Events of one book are published in the order they happened. The stream may
+ * be shared by several `GatorLibServices` of the same catalog, so publishing
+ * and reading synchronize on the stream.
+ */
+public class CatalogChangeStream {
+
+    /**
+     * What happened to a book.
+     */
+    enum EventType {
+        // The book was added to the catalog
+        INSERTED,
+        // The patron borrowed the available book
+        BORROWED,
+        // The patron joined the waitlist of the book
+        RESERVED,
+        // The patron returned the book
+        RETURNED,
+        // The returned book was allotted to the patron at the head of its waitlist
+        ALLOTTED,
+        // The patron picked up the book held for them
+        PICKED_UP,
+        // The patron did not pick up the book held for them in time
+        HOLD_EXPIRED,
+        // The book was removed from the catalog
+        DELETED,
+        // The reservation of the patron was cancelled by the deletion of the book
+        RESERVATION_CANCELLED,
+        // A catalog set operation replaced the catalog; no book or patron is given
+        CATALOG_REPLACED
+    }
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    /**
+     * Receives the events read by a subscription.
+     */
+    interface EventHandler {
+        /**
+         * Handles one event.
+         *
+         * @param sequence The position of the event in the stream, starting at 0.
+         * @param type     What happened.
+         * @param bookId   The book, -1 for CATALOG_REPLACED.
+         * @param patronId The patron, -1 if the event involves none.
+         * @param tick     The logical time of the catalog when it happened.
+         * @throws IOException If the handler fails to write the event.
+         */
+        void onEvent(long sequence, EventType type, int bookId, int patronId, long tick) throws IOException;
+    }
+
+    /**
+     * The position of one subscriber in the stream.
+     */
+    public final class Subscription {
+        // Sequence of the next event to read, guarded by the stream
+        private long next;
+        private long missedEvents = 0;
+        // Events copied out of the ring by the last poll
+        private final byte[] batchTypes = new byte[LibraryActionConstant.CDC_POLL_BATCH];
+        private final int[] batchBookIds = new int[LibraryActionConstant.CDC_POLL_BATCH];
+        private final int[] batchPatronIds = new int[LibraryActionConstant.CDC_POLL_BATCH];
+        private final long[] batchTicks = new long[LibraryActionConstant.CDC_POLL_BATCH];
+
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Reads the next events, up to `CDC_POLL_BATCH` of them. The events are
+         * copied out of the ring first, so the handler runs without holding up
+         * the catalog.
+         *
+         * @param handler Receives the events in order.
+         * @return The number of events read.
+         * @throws IOException If the handler fails.
+         */
+        public int poll(EventHandler handler) throws IOException {
+            long first;
+            int count;
+            synchronized (CatalogChangeStream.this) {
+                if (published - next > types.length) {
+                    // Overwritten before this subscriber got to them
+                    missedEvents += published - types.length - next;
+                    next = published - types.length;
+                }
+                first = next;
+                count = (int) Math.min(batchTypes.length, published - next);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) ((first + i) & mask);
+                    batchTypes[i] = types[slot];
+                    batchBookIds[i] = bookIds[slot];
+                    batchPatronIds[i] = patronIds[slot];
+                    batchTicks[i] = ticks[slot];
+                }
+                next += count;
+            }
+            for (int i = 0; i < count; i++) {
+                handler.onEvent(first + i, EVENT_TYPES[batchTypes[i]], batchBookIds[i], batchPatronIds[i],
+                        batchTicks[i]);
+            }
+            return count;
+        }
+
+        /**
+         * Waits until there are events to read.
+         *
+         * @param timeoutMillis The longest time to wait.
+         * @return False once the stream is closed and every event has been read.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        public boolean awaitEvents(long timeoutMillis) throws InterruptedException {
+            synchronized (CatalogChangeStream.this) {
+                if (next == published && !closed) {
+                    CatalogChangeStream.this.wait(timeoutMillis);
+                }
+                return next < published || !closed;
+            }
+        }
+
+        /**
+         * Gets the number of events published but not yet read, including the ones
+         * that will be missed.
+         */
+        public long getLag() {
+            synchronized (CatalogChangeStream.this) {
+                return published - next;
+            }
+        }
+
+        /**
+         * Gets the number of events overwritten before this subscriber read them.
+         */
+        public long getMissedEvents() {
+            synchronized (CatalogChangeStream.this) {
+                return missedEvents;
+            }
+        }
+
+        /**
+         * Checks whether the subscriber is more than half a ring behind, and will
+         * miss events if it does not catch up.
+         */
+        public boolean isSlow() {
+            return getLag() > types.length / 2;
+        }
+    }
+
+    // Slot i of each array holds one field of the event at a sequence equal to i
+    // modulo the capacity
+    private final byte[] types;
+    private final int[] bookIds;
+    private final int[] patronIds;
+    private final long[] ticks;
+    private final int mask;
+    // Number of events published so far, also the sequence of the next one
+    private long published = 0;
+    private boolean closed = false;
+    // File sink threads, joined when the stream is closed
+    private final ArrayList<Thread> sinks = new ArrayList<>();
+
+    /**
+     * Constructs an empty stream.
+     *
+     * @param capacity The number of events kept for slow subscribers, rounded up
+     *                 to a power of two.
+     */
+    public CatalogChangeStream(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.types = new byte[size];
+        this.bookIds = new int[size];
+        this.patronIds = new int[size];
+        this.ticks = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Publishes an event, overwriting the oldest one if the ring is full.
+     *
+     * @param type     What happened.
+     * @param bookId   The book.
+     * @param patronId The patron, -1 if the event involves none.
+     * @param tick     The logical time of the catalog.
+     */
+    public synchronized void publish(EventType type, int bookId, int patronId, long tick) {
+        int slot = (int) (published & mask);
+        types[slot] = (byte) type.ordinal();
+        bookIds[slot] = bookId;
+        patronIds[slot] = patronId;
+        ticks[slot] = tick;
+        published++;
+        notifyAll();
+    }
+
+    /**
+     * Subscribes to the events published from now on. The stream keeps no state
+     * per subscriber, so a subscription that is no longer read needs no
+     * cleanup.
+     *
+     * @return The new subscription.
+     */
+    public synchronized Subscription subscribe() {
+        return new Subscription(published);
+    }
+
+    /**
+     * Gets the number of events published so far.
+     */
+    public synchronized long getPublishedCount() {
+        return published;
+    }
+
+    /**
+     * Subscribes a thread that writes every event to a file, one line per event
+     * as "sequence tick TYPE bookId patronId", with a "LOST n" line where it
+     * fell behind and missed n events.
+     *
+     * @param fileName The file to write.
+     * @throws IOException If the file cannot be created.
+     */
+    public void startFileSink(String fileName) throws IOException {
+        Writer out = new BufferedWriter(new FileWriter(fileName));
+        Subscription subscription = subscribe();
+        Thread sink = new Thread(() -> drainToFile(subscription, out), "gator-change-log");
+        sink.setDaemon(true);
+        synchronized (this) {
+            sinks.add(sink);
+        }
+        sink.start();
+    }
+
+    /**
+     * Closes the stream, waiting until the file sinks have written every event
+     * published before it.
+     */
+    public void close() {
+        ArrayList<Thread> running;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            running = new ArrayList<>(sinks);
+        }
+        for (Thread sink : running) {
+            try {
+                sink.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Body of a file sink thread: writes events until the stream is closed and
+     * drained, flushing whenever it has caught up.
+     */
+    private static void drainToFile(Subscription subscription, Writer out) {
+        try (Writer file = out) {
+            // Sequence of the event expected next, to spot missed ones
+            long[] expected = { subscription.next };
+            EventHandler handler = (sequence, type, bookId, patronId, tick) -> {
+                if (sequence != expected[0]) {
+                    file.write("LOST " + (sequence - expected[0]) + "\n");
+                }
+                file.write(sequence + " " + tick + " " + type + " " + bookId + " " + patronId + "\n");
+                expected[0] = sequence + 1;
+            };
+            while (subscription.awaitEvents(LibraryActionConstant.CDC_SINK_POLL_INTERVAL_MS)) {
+                if (subscription.poll(handler) == 0 || subscription.getLag() == 0) {
+                    file.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // The sink stops, the catalog carries on without it
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The `CatalogSetOperations` class merges two Red-Black Tree catalogs of the
+ * Gator Library Book Management System with join-based set operations (union,
+ * intersection and difference).
+ * Each operation takes the root of the right catalog as a pivot, splits the
+ * left catalog around the pivot's book ID, recurses on the two pairs of halves
+ * and joins the results back together, doing O(m log(n / m + 1)) work for
+ * catalogs of sizes m <= n. The two recursive halves are independent, so they
+ * run as fork-join tasks and large merges spread over every core by work
+ * stealing. Small subproblems run sequentially on the current worker.
+ * Both catalogs are consumed: the result replaces the left catalog and the
+ * right catalog is left empty.
+ */
+public class CatalogSetOperations {
+
+    /**
+     * How a book ID present in both catalogs is resolved.
+     */
+    public enum ConflictPolicy {
+        // Keep the left catalog's book
+        KEEP_LEFT(LibraryActionConstant.KEEP_LEFT_POLICY),
+        // Keep the right catalog's book
+        KEEP_RIGHT(LibraryActionConstant.KEEP_RIGHT_POLICY),
+        // Keep the left catalog's book and queue the right book's reservations on it
+        MERGE_RESERVATIONS(LibraryActionConstant.MERGE_RESERVATIONS_POLICY);
+
+        private final String commandName;
+
+        ConflictPolicy(String commandName) {
+            this.commandName = commandName;
+        }
+
+        /**
+         * Gets the policy named in a library command.
+         *
+         * @param commandName The policy name, for example KeepLeft.
+         * @return The matching policy.
+         * @throws IllegalArgumentException If no policy has the given name.
+         */
+        public static ConflictPolicy fromCommandName(String commandName) {
+            for (ConflictPolicy policy : values()) {
+                if (policy.commandName.equalsIgnoreCase(commandName)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown conflict policy: " + commandName);
+        }
+    }
+
+    private enum Operation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    /**
+     * Replaces the left catalog with the union of both catalogs.
+     *
+     * @param left   The catalog receiving the result.
+     * @param right  The catalog merged into it, left empty.
+     * @param policy How book IDs present in both catalogs are resolved.
+     */
+    public static void union(RedBlackMethod left, RedBlackMethod right, ConflictPolicy policy) {
+        run(Operation.UNION, left, right, policy);
+    }
+
+    /**
+     * Replaces the left catalog with the books whose IDs are in both catalogs.
+     *
+     * @param left   The catalog receiving the result.
+     * @param right  The catalog intersected with it, left empty.
+     * @param policy Which copy of each common book is kept.
+     */
+    public static void intersection(RedBlackMethod left, RedBlackMethod right, ConflictPolicy policy) {
+        run(Operation.INTERSECTION, left, right, policy);
+    }
+
+    /**
+     * Removes from the left catalog every book whose ID is in the right catalog.
+     *
+     * @param left  The catalog receiving the result.
+     * @param right The catalog of books to remove, left empty.
+     */
+    public static void difference(RedBlackMethod left, RedBlackMethod right) {
+        run(Operation.DIFFERENCE, left, right, ConflictPolicy.KEEP_LEFT);
+    }
+
+    /**
+     * Resolves a book ID present in both catalogs.
+     *
+     * @param leftBook  The left catalog's book, updated in place when merging
+     *                  reservations.
+     * @param rightBook The right catalog's book.
+     * @param policy    The conflict policy.
+     * @return The book to keep.
+     */
+    static BookNode resolveConflict(BookNode leftBook, BookNode rightBook, ConflictPolicy policy) {
+        switch (policy) {
+            case KEEP_RIGHT:
+                return rightBook;
+            case MERGE_RESERVATIONS:
+                for (BookWaitList patron : rightBook.getBookReservationQueue().getBookReservationList()) {
+                    if (patron.getPatronId() != leftBook.getBookBorrowedBy() && !isQueued(leftBook, patron)) {
+                        leftBook.getBookReservationQueue().insertPatronToWaitQueue(new BookWaitList(
+                                patron.getPatronId(), patron.getPriorityNumber(), patron.getTimeOfReservation()));
+                    }
+                }
+                leftBook.bumpBookVersion();
+                return leftBook;
+            default:
+                return leftBook;
+        }
+    }
+
+    private static boolean isQueued(BookNode book, BookWaitList patron) {
+        for (BookWaitList queued : book.getBookReservationQueue().getBookReservationList()) {
+            if (queued.getPatronId() == patron.getPatronId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void run(Operation operation, RedBlackMethod left, RedBlackMethod right,
+            ConflictPolicy policy) {
+        RedBlackNode leftRoot = left.headRedBlackNode;
+        RedBlackNode rightRoot = right.headRedBlackNode;
+        left.headRedBlackNode = null;
+        right.headRedBlackNode = null;
+
+        AtomicInteger colorFlipCount = new AtomicInteger();
+        RedBlackTreeStats rebalancing = new RedBlackTreeStats();
+        RedBlackMethod.JoinedTree result = ForkJoinPool.commonPool().invoke(new SetOperationTask(operation, policy,
+                new RedBlackMethod.JoinedTree(leftRoot, left.getBlackHeight(leftRoot)),
+                new RedBlackMethod.JoinedTree(rightRoot, right.getBlackHeight(rightRoot)), colorFlipCount,
+                rebalancing));
+        left.headRedBlackNode = RedBlackMethod.asRoot(result.root);
+        left.colorFlipCount += colorFlipCount.get();
+        left.treeStats.addCounters(rebalancing);
+    }
+
+    /**
+     * Applies a set operation to a pair of detached subtrees, forking the two
+     * recursive halves when the right subtree is large enough to be worth it.
+     */
+    private static final class SetOperationTask extends RecursiveTask<RedBlackMethod.JoinedTree> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Operation operation;
+        private final ConflictPolicy policy;
+        private final RedBlackMethod.JoinedTree left;
+        private final RedBlackMethod.JoinedTree right;
+        // Colour flips and rotations made by every task of the operation
+        private final AtomicInteger colorFlipCount;
+        private final RedBlackTreeStats rebalancing;
+
+        SetOperationTask(Operation operation, ConflictPolicy policy, RedBlackMethod.JoinedTree left,
+                RedBlackMethod.JoinedTree right, AtomicInteger colorFlipCount, RedBlackTreeStats rebalancing) {
+            this.operation = operation;
+            this.policy = policy;
+            this.left = left;
+            this.right = right;
+            this.colorFlipCount = colorFlipCount;
+            this.rebalancing = rebalancing;
+        }
+
+        @Override
+        protected RedBlackMethod.JoinedTree compute() {
+            if (left.root == null) {
+                return operation == Operation.UNION ? right : RedBlackMethod.JoinedTree.EMPTY;
+            }
+            if (right.root == null) {
+                return operation == Operation.INTERSECTION ? RedBlackMethod.JoinedTree.EMPTY : left;
+            }
+
+            // Splits and joins of this task rebalance through a private tree so
+            // concurrent tasks never share a colour flip counter
+            RedBlackMethod worker = new RedBlackMethod();
+            RedBlackNode pivot = right.root;
+            int childBlackHeight = right.blackHeight
+                    - (pivot.getRedBlackNodeColor() == LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE ? 1 : 0);
+            RedBlackMethod.JoinedTree rightLower = new RedBlackMethod.JoinedTree(
+                    RedBlackMethod.detach(pivot.getLeftRedBlackNode()), childBlackHeight);
+            RedBlackMethod.JoinedTree rightUpper = new RedBlackMethod.JoinedTree(
+                    RedBlackMethod.detach(pivot.getRightRedBlackNode()), childBlackHeight);
+            pivot.setLeftRedBlackNode(null);
+            pivot.setRightRedBlackNode(null);
+            RedBlackMethod.SplitTree split = worker.splitSubtree(left.root, left.blackHeight,
+                    pivot.getBook().getBookId());
+
+            SetOperationTask lowerTask = new SetOperationTask(operation, policy, split.lower, rightLower,
+                    colorFlipCount, rebalancing);
+            SetOperationTask upperTask = new SetOperationTask(operation, policy, split.upper, rightUpper,
+                    colorFlipCount, rebalancing);
+            RedBlackMethod.JoinedTree lower;
+            RedBlackMethod.JoinedTree upper;
+            if (right.blackHeight > LibraryActionConstant.SET_OPERATION_SEQUENTIAL_BLACK_HEIGHT) {
+                lowerTask.fork();
+                upper = upperTask.compute();
+                lower = lowerTask.join();
+            } else {
+                lower = lowerTask.compute();
+                upper = upperTask.compute();
+            }
+
+            RedBlackNode middle = null;
+            if (operation == Operation.UNION) {
+                middle = split.match == null ? pivot : split.match;
+            } else if (operation == Operation.INTERSECTION && split.match != null) {
+                middle = split.match;
+            }
+            if (middle != null && split.match != null) {
+                middle.setBook(resolveConflict(split.match.getBook(), pivot.getBook(), policy));
+            }
+
+            RedBlackMethod.JoinedTree joined = middle == null ? worker.joinSubtrees(lower, upper)
+                    : worker.joinSubtrees(lower.root, lower.blackHeight, middle, upper.root, upper.blackHeight);
+            colorFlipCount.addAndGet(worker.colorFlipCount);
+            rebalancing.addCounters(worker.treeStats);
+            return joined;
+        }
+    }
+}
@@ -1,6 +1,9 @@
-import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 /**
  * The `GatorLibServices` class provides services to perform various actions in
@@ -12,17 +15,34 @@ public class GatorLibServices {
 
     // Red-Black tree instance
     RedBlackMethod rb;
-    // FileWriter for writing output to a file
-    FileWriter writer;
+    // Writer for writing output, usually a FileWriter
+    Writer writer;
+    // Rendered PrintBook output of recently printed books
+    BookRenderCache renderCache = new BookRenderCache(LibraryActionConstant.RENDER_CACHE_MAX_CHARS);
+    // Rendered PrintBooks output of recently queried ranges
+    RangeQueryCache rangeCache = new RangeQueryCache(LibraryActionConstant.RANGE_CACHE_MAX_ENTRIES,
+            LibraryActionConstant.RANGE_CACHE_MAX_CHARS);
+    // Due dates of the active loans
+    LoanTracker loanTracker = new LoanTracker();
+    // Holds of allotted books waiting to be picked up
+    HoldExpiryQueue holdQueue = new HoldExpiryQueue(LibraryActionConstant.HOLD_WINDOW_TICKS);
+    // Most requested books, estimated from borrows and reservations
+    PopularityTracker popularity = new PopularityTracker(LibraryActionConstant.POPULARITY_HALF_LIFE_TICKS);
+    // IDs of the books in the catalog
+    BookIdBitmap bookIds = new BookIdBitmap();
+    // IDs of the books available to borrow
+    BookIdBitmap availableBookIds = new BookIdBitmap();
+    // Events published for every change to the catalog, null if not followed
+    CatalogChangeStream changeStream = null;
 
     /**
      * Constructor to initialize GatorLibServices with a Red-Black tree instance and
-     * a FileWriter.
+     * a Writer.
      *
      * @param rb     The Red-Black tree instance.
-     * @param writer The FileWriter to write output.
+     * @param writer The Writer to write output.
      */
-    public GatorLibServices(RedBlackMethod rb, FileWriter write) {
+    public GatorLibServices(RedBlackMethod rb, Writer write) {
         this.rb = rb;
         this.writer = write;
     }
@@ -35,8 +55,15 @@ public class GatorLibServices {
     public void performInsertBookAction(BookNode newBookNode) {
         // Implementation for printing book action
         try {
+            if (bookIds.contains(newBookNode.getBookId())) {
+                // The catalog keeps the book it already has
+                return;
+            }
+            rangeCache.invalidate(newBookNode.getBookId());
             RedBlackNode newBookRBNode = new RedBlackNode(newBookNode);
             rb.insertInRedBlackTree(newBookRBNode, rb.getHeadRedBlackNode());
+            indexBook(newBookNode.getBookId(), newBookNode);
+            publishChange(CatalogChangeStream.EventType.INSERTED, newBookNode.getBookId(), -1);
             return;
         } catch (Exception e) {
             // TODO: handle exception
@@ -52,31 +79,10 @@ public class GatorLibServices {
     public void performPrintBookAction(int bookIdToSearch) {
         // Implementation for search book action
         try {
-            RedBlackNode redBlackBookNode = rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), bookIdToSearch);
-            if (redBlackBookNode != null) {
-                BookNode bookDetails = redBlackBookNode.getBook();
-                writer.write("BookID = " + bookDetails.getBookId() + "\n");
-                writer.write("Title = " + bookDetails.getBookName() + "\n");
-                writer.write("Author = " + bookDetails.getBookAuthorName() + "\n");
-                writer.write("Availability = " + (bookDetails.isBookAvailabilityStatus() ? "Yes" : "No") + "\n");
-                writer.write("BorrowedBy = "
-                        + (bookDetails.getBookBorrowedBy() != -1 ? bookDetails.getBookBorrowedBy() : "None") + "\n");
-                ArrayList<BookWaitList> reservationList = bookDetails.getBookReservationQueue()
-                        .getBookReservationList();
-                String reservation = "";
-                for (int i = 0; i < reservationList.size(); i++) {
-                    if (i != reservationList.size() - 1) {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + ",";
-                    } else {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + " ";
-                    }
-                }
-                writer.write("Reservations = [" + reservation + "]\n");
-                writer.write("\n");
-            } else {
-                writer.write("Book " + bookIdToSearch + " not found in the library\n");
-                writer.write("\n");
-            }
+            RedBlackNode redBlackBookNode = bookIds.contains(bookIdToSearch)
+                    ? rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), bookIdToSearch)
+                    : null;
+            writePrintedBook(bookIdToSearch, redBlackBookNode == null ? null : redBlackBookNode.getBook());
 
         } catch (Exception e) {
 
@@ -85,6 +91,60 @@ public class GatorLibServices {
         return;
     }
 
+    /**
+     * Performs the action of printing the details of several books at once, in
+     * ascending book ID order, each exactly as PrintBook prints it. The IDs are
+     * sorted and resolved in one finger search of the catalog, and IDs the
+     * catalog does not hold are not searched for at all.
+     *
+     * @param bookIdsToSearch The book IDs to print; duplicates are printed once.
+     */
+    public void performPrintBooksByIdsAction(int[] bookIdsToSearch) {
+        try {
+            int[] sortedBookIds = bookIdsToSearch.clone();
+            Arrays.sort(sortedBookIds);
+            // Distinct IDs the catalog holds, the only ones worth searching for
+            int[] presentBookIds = new int[sortedBookIds.length];
+            int present = 0;
+            for (int i = 0; i < sortedBookIds.length; i++) {
+                if ((i == 0 || sortedBookIds[i] != sortedBookIds[i - 1]) && bookIds.contains(sortedBookIds[i])) {
+                    presentBookIds[present++] = sortedBookIds[i];
+                }
+            }
+            BookNode[] books = rb.searchSortedInRedBlackTree(Arrays.copyOf(presentBookIds, present));
+            for (int i = 0, j = 0; i < sortedBookIds.length; i++) {
+                if (i > 0 && sortedBookIds[i] == sortedBookIds[i - 1]) {
+                    continue;
+                }
+                BookNode book = j < present && presentBookIds[j] == sortedBookIds[i] ? books[j++] : null;
+                writePrintedBook(sortedBookIds[i], book);
+            }
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Writes the PrintBook output of a book, reusing its cached rendering.
+     *
+     * @param bookID      The ID of the book.
+     * @param bookDetails The book, or null if it is not in the catalog.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writePrintedBook(int bookID, BookNode bookDetails) throws IOException {
+        if (bookDetails != null) {
+            char[] rendered = renderCache.get(bookDetails);
+            if (rendered == null) {
+                rendered = renderBookDetails(bookDetails).toCharArray();
+                renderCache.put(bookDetails, rendered);
+            }
+            writer.write(rendered);
+        } else {
+            writer.write("Book " + bookID + " not found in the library\n");
+            writer.write("\n");
+        }
+    }
+
     /**
      * Performs the action of borrowing a book by a patron with the specified
      * priority number.
@@ -96,9 +156,14 @@ public class GatorLibServices {
     public void performBorrowBookAction(int patronID, int bookID, int priorityNumber) {
         // Implementation for borrowing book action
         try {
+            rangeCache.invalidate(bookID);
 
-            writer.write(
-                    rb.checkForBorrowInRedBlackTree(rb.getHeadRedBlackNode(), bookID, patronID, priorityNumber) + "\n");
+            LibraryActionResult result = rb.checkForBorrowInRedBlackTree(rb.getHeadRedBlackNode(), bookID,
+                    patronID, priorityNumber);
+            updateLoan(bookID);
+            popularity.recordRequest(bookID, loanTracker.getCurrentTick());
+            publishResult(result);
+            writer.write(formatBorrowStatus(result) + "\n");
             writer.write("\n");
         } catch (Exception e) {
             // TODO: handle exception
@@ -115,13 +180,22 @@ public class GatorLibServices {
     public void performReturnBookAction(int patronID, int bookID) {
         // Implementation for returning book action
         try {
-            String status = rb.returnBookActionInRedBlackTree(rb.getHeadRedBlackNode(), bookID, patronID);
+            rangeCache.invalidate(bookID);
+            LibraryActionResult result = rb.returnBookActionInRedBlackTree(rb.getHeadRedBlackNode(), bookID,
+                    patronID);
+            updateLoan(bookID);
+            holdQueue.cancel(bookID);
+            if (result.outcome == LibraryActionResult.Outcome.ALLOTTED) {
+                // The next patron has until the end of the hold window to pick the book up
+                holdQueue.placeHold(bookID, result.allottedPatronId, loanTracker.getCurrentTick());
+            }
+            publishResult(result);
 
-            writer.write(status.split(";", 2)[0] + "\n");
+            writer.write(formatReturnStatus(result) + "\n");
             writer.write("\n");
 
-            if (!(status.split(";", 2)[1].isEmpty())) {
-                writer.write(status.split(";", 2)[1] + "\n");
+            if (result.outcome == LibraryActionResult.Outcome.ALLOTTED) {
+                writer.write(formatAllotmentStatus(result) + "\n");
                 writer.write("\n");
             }
 
@@ -139,8 +213,16 @@ public class GatorLibServices {
     public void performDeleteBookAction(int bookID) {
         // Implementation for deleting book action
         try {
+            renderCache.invalidate(bookID);
+            rangeCache.invalidate(bookID);
+            loanTracker.updateLoan(bookID, null);
+            holdQueue.cancel(bookID);
+            popularity.forget(bookID);
+            indexBook(bookID, null);
 
-            writer.write(rb.deleteFromRedBlackTree(bookID, rb.getHeadRedBlackNode()) + "\n");
+            LibraryActionResult result = rb.deleteFromRedBlackTree(bookID, rb.getHeadRedBlackNode());
+            publishResult(result);
+            writer.write(formatDeletionStatus(result) + "\n");
             writer.write("\n");
         } catch (Exception e) {
             // TODO: handle exception
@@ -148,6 +230,132 @@ public class GatorLibServices {
 
     }
 
+    /**
+     * Performs the action of deleting every book within a specified ID range. The
+     * range is split out of the catalog in one pass and each removed book is
+     * reported exactly as DeleteBook reports it.
+     *
+     * @param startbookId The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     */
+    public void performDeleteBooksAction(int startbookId, int endBookID) {
+        try {
+            RedBlackCursor cursor = new RedBlackCursor(rb.extractRangeFromRedBlackTree(startbookId, endBookID));
+            for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+                writer.write(removeExtractedBook(cursor.getBook()) + "\n");
+                writer.write("\n");
+            }
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Performs the action of extracting every book within a specified ID range,
+     * printing the details of each removed book before its deletion report.
+     *
+     * @param startbookId The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     */
+    public void performExtractBooksAction(int startbookId, int endBookID) {
+        try {
+            RedBlackCursor cursor = new RedBlackCursor(rb.extractRangeFromRedBlackTree(startbookId, endBookID));
+            for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+                writeBookDetails(cursor.getBook());
+                writer.write(removeExtractedBook(cursor.getBook()) + "\n");
+                writer.write("\n");
+            }
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Finishes removing a book that was split out of the catalog: drops its
+     * cached output and builds its deletion report.
+     *
+     * @param book The removed book.
+     * @return The deletion status message of the book.
+     */
+    private String removeExtractedBook(BookNode book) {
+        book.bumpBookVersion();
+        renderCache.invalidate(book.getBookId());
+        rangeCache.invalidate(book.getBookId());
+        loanTracker.updateLoan(book.getBookId(), null);
+        holdQueue.cancel(book.getBookId());
+        popularity.forget(book.getBookId());
+        indexBook(book.getBookId(), null);
+        LibraryActionResult result = LibraryActionResult.deleted(book);
+        publishResult(result);
+        return formatDeletionStatus(result);
+    }
+
+    /**
+     * Performs a set operation between the catalog and a second catalog built
+     * from another input file: UnionCatalog merges its books in,
+     * IntersectCatalog keeps only the common books and DifferenceCatalog removes
+     * its books.
+     *
+     * @param libraryAction The set operation to perform.
+     * @param fileName      The input file building the second catalog.
+     * @param policy        How book IDs present in both catalogs are resolved.
+     */
+    public void performCatalogSetOperationAction(String libraryAction, String fileName,
+            CatalogSetOperations.ConflictPolicy policy) {
+        try {
+            RedBlackMethod other = loadCatalog(fileName);
+            if (LibraryActionConstant.UNION_CATALOG.equals(libraryAction)) {
+                rb.unionRedBlackTree(other, policy);
+            } else if (LibraryActionConstant.INTERSECT_CATALOG.equals(libraryAction)) {
+                rb.intersectRedBlackTree(other, policy);
+            } else {
+                rb.differenceRedBlackTree(other);
+            }
+            // Any cached range may have gained or lost books
+            rangeCache.clear();
+
+            ArrayList<BookNode> books = rb.serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                    rb.getHeadRedBlackNode(), new ArrayList<>());
+            // Merged books may bring their own borrowers
+            loanTracker.resync(books);
+            holdQueue.retainValid(books);
+            bookIds.rebuild(books, false);
+            availableBookIds.rebuild(books, true);
+            publishChange(CatalogChangeStream.EventType.CATALOG_REPLACED, -1, -1);
+            writer.write(libraryAction + " with " + fileName + " complete, " + books.size()
+                    + " books in the library\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Builds a separate catalog by running the commands of an input file against
+     * it, discarding their output.
+     *
+     * @param fileName The input file.
+     * @return The catalog built from the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private RedBlackMethod loadCatalog(String fileName) throws IOException {
+        RedBlackMethod catalog = new RedBlackMethod();
+        GatorLibServices catalogServices = new GatorLibServices(catalog, Writer.nullWriter());
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    String libraryAction = line.substring(0, line.indexOf('(')).trim();
+                    if (LibraryActionConstant.QUIT.equals(libraryAction)) {
+                        break;
+                    }
+                    gatorLibrary.libraryActionPerformer(catalogServices, libraryAction, line);
+                }
+            }
+        }
+        return catalog;
+    }
+
     /**
      * Performs the action of printing details for books within a specified ID
      * range.
@@ -158,37 +366,265 @@ public class GatorLibServices {
     public void performPrintBooksAction(int startbookId, int endBookID) {
         // Implementation for search book action
         try {
-            ArrayList<BookNode> bookArrayList = rb.serachTheRedBlackTreeInRange(startbookId, endBookID,
-                    rb.getHeadRedBlackNode(), new ArrayList<>());
-            Collections.sort(bookArrayList, (b1, b2) -> Integer.compare(b1.getBookId(), b2.getBookId()));
-
-            for (BookNode bookDetails : bookArrayList) {
-                writer.write("BookID = " + bookDetails.getBookId() + "\n");
-                writer.write("Title = " + bookDetails.getBookName() + "\n");
-                writer.write("Author = " + bookDetails.getBookAuthorName() + "\n");
-                writer.write("Availability = " + (bookDetails.isBookAvailabilityStatus() ? "Yes" : "No") + "\n");
-                writer.write("BorrowedBy = "
-                        + (bookDetails.getBookBorrowedBy() != -1 ? bookDetails.getBookBorrowedBy() : "None") + "\n");
-                ArrayList<BookWaitList> reservationList = bookDetails.getBookReservationQueue()
-                        .getBookReservationList();
-                String reservation = "";
-                for (int i = 0; i < reservationList.size(); i++) {
-                    if (i != reservationList.size() - 1) {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + ",";
-                    } else {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + " ";
-                    }
+            char[] rendered = rangeCache.get(startbookId, endBookID);
+            if (rendered == null) {
+                ArrayList<BookNode> bookArrayList = rb.serachTheRedBlackTreeInRange(startbookId, endBookID,
+                        rb.getHeadRedBlackNode(), new ArrayList<>());
+                Collections.sort(bookArrayList, (b1, b2) -> Integer.compare(b1.getBookId(), b2.getBookId()));
+
+                StringBuilder renderedRange = new StringBuilder();
+                for (BookNode bookDetails : bookArrayList) {
+                    renderedRange.append(renderBookDetails(bookDetails));
                 }
-                writer.write("Reservations = [" + reservation + "]\n");
+                rendered = renderedRange.toString().toCharArray();
+                rangeCache.put(startbookId, endBookID, rendered);
+            }
+            writer.write(rendered);
+        } catch (Exception e) {
+
+        }
+
+        return;
+    }
+
+    /**
+     * Performs the action of printing one page of the books within a specified ID
+     * range, followed by the continuation token for the next page.
+     *
+     * @param startbookId The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @param limit       The maximum number of books on the page.
+     * @param afterBookID Only books with a greater ID are printed; pass the
+     *                    previous page's token, or a value below the range for
+     *                    the first page.
+     */
+    public void performPrintBooksPageAction(int startbookId, int endBookID, int limit, int afterBookID) {
+        try {
+            int pageSize = Math.max(1, limit);
+            // Fetch one extra book to learn whether another page follows
+            ArrayList<BookNode> bookArrayList = rb.searchTheRedBlackTreePage(startbookId, endBookID, afterBookID,
+                    pageSize + 1);
+            boolean hasNextPage = bookArrayList.size() > pageSize;
+            for (int i = 0; i < bookArrayList.size() && i < pageSize; i++) {
+                writeBookDetails(bookArrayList.get(i));
+            }
+            writer.write("Next Page After = "
+                    + (hasNextPage ? bookArrayList.get(pageSize - 1).getBookId() : "None") + "\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Performs the action of advancing the library's logical clock and listing
+     * every loan that is past its due date, earliest due first.
+     *
+     * @param now The logical time to advance to.
+     */
+    public void performOverdueAction(long now) {
+        try {
+            advanceClock(now);
+            ArrayList<LoanTimingWheel.Loan> overdueLoans = loanTracker.getOverdueLoans();
+            if (overdueLoans.isEmpty()) {
+                writer.write("No overdue books at time " + loanTracker.getCurrentTick() + "\n");
+                writer.write("\n");
+            }
+            for (LoanTimingWheel.Loan loan : overdueLoans) {
+                writer.write("Book " + loan.bookId + " borrowed by Patron " + loan.patronId + " was due at time "
+                        + loan.dueTick + "\n");
                 writer.write("\n");
+            }
+        } catch (Exception e) {
 
+        }
+    }
 
+    /**
+     * Performs the action of listing the most requested books.
+     *
+     * @param k The number of books to list.
+     */
+    public void performTopBooksAction(int k) {
+        try {
+            ArrayList<PopularityTracker.Candidate> topBooks = popularity.topBooks(k, loanTracker.getCurrentTick());
+            if (topBooks.isEmpty()) {
+                writer.write("No book requests recorded\n");
+                writer.write("\n");
+            }
+            for (PopularityTracker.Candidate candidate : topBooks) {
+                writer.write("Book " + candidate.bookId + " requested about " + candidate.requests + " times\n");
+                writer.write("\n");
             }
         } catch (Exception e) {
 
         }
+    }
 
-        return;
+    /**
+     * Performs the action of advancing the library's logical clock, expiring the
+     * holds that were not picked up in time.
+     *
+     * @param now The logical time to advance to.
+     */
+    public void performAdvanceClockAction(long now) {
+        try {
+            advanceClock(now);
+            writer.write("Library clock at time " + loanTracker.getCurrentTick() + "\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Performs the action of a patron picking up a book held for them.
+     *
+     * @param patronID The ID of the patron.
+     * @param bookID   The ID of the book.
+     */
+    public void performPickUpBookAction(int patronID, int bookID) {
+        try {
+            if (holdQueue.pickUp(bookID, patronID)) {
+                publishChange(CatalogChangeStream.EventType.PICKED_UP, bookID, patronID);
+                writer.write("Book " + bookID + " Picked up by Patron " + patronID + "\n");
+            } else {
+                writer.write("Book " + bookID + " is not held for Patron " + patronID + "\n");
+            }
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Advances the logical clock to the given time, expiring due holds in expiry
+     * order so each roll-over starts its new loan and hold at the time the
+     * previous hold expired.
+     *
+     * @param now The logical time to advance to.
+     * @throws IOException If the expiry report cannot be written.
+     */
+    private void advanceClock(long now) throws IOException {
+        HoldExpiryQueue.Hold hold;
+        while ((hold = holdQueue.pollExpired(now)) != null) {
+            loanTracker.advanceTo(hold.expiryTick);
+            expireHold(hold);
+        }
+        loanTracker.advanceTo(now);
+    }
+
+    /**
+     * Expires a hold that was not picked up: the holder gives the book back and
+     * it is allotted to the next patron in the waitlist, who gets a new hold.
+     *
+     * @param hold The expired hold.
+     * @throws IOException If the expiry report cannot be written.
+     */
+    private void expireHold(HoldExpiryQueue.Hold hold) throws IOException {
+        RedBlackNode redBlackBookNode = rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), hold.bookId);
+        if (redBlackBookNode == null || redBlackBookNode.getBook().getBookBorrowedBy() != hold.patronId) {
+            return;
+        }
+        rangeCache.invalidate(hold.bookId);
+        LibraryActionResult result = rb.returnBookActionInRedBlackTree(rb.getHeadRedBlackNode(), hold.bookId,
+                hold.patronId);
+        updateLoan(hold.bookId);
+        publishChange(CatalogChangeStream.EventType.HOLD_EXPIRED, hold.bookId, hold.patronId);
+        if (result.outcome == LibraryActionResult.Outcome.ALLOTTED) {
+            publishChange(CatalogChangeStream.EventType.ALLOTTED, hold.bookId, result.allottedPatronId);
+        }
+
+        writer.write("Hold on Book " + hold.bookId + " by Patron " + hold.patronId + " expired\n");
+        writer.write("\n");
+        if (result.outcome == LibraryActionResult.Outcome.ALLOTTED) {
+            writer.write(formatAllotmentStatus(result) + "\n");
+            writer.write("\n");
+            holdQueue.placeHold(hold.bookId, result.allottedPatronId, hold.expiryTick);
+        }
+    }
+
+    /**
+     * Records the current borrower and availability of a book with the loan
+     * tracker and the ID bitmaps after a command that may have changed them.
+     *
+     * @param bookID The ID of the book.
+     * @return The book, or null if it is not in the catalog.
+     */
+    private BookNode updateLoan(int bookID) {
+        RedBlackNode redBlackBookNode = rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), bookID);
+        BookNode book = redBlackBookNode == null ? null : redBlackBookNode.getBook();
+        loanTracker.updateLoan(bookID, book);
+        indexBook(bookID, book);
+        return book;
+    }
+
+    /**
+     * Publishes a change to the catalog, if it is being followed.
+     *
+     * @param type     What happened.
+     * @param bookID   The ID of the book.
+     * @param patronID The ID of the patron, -1 if none.
+     */
+    private void publishChange(CatalogChangeStream.EventType type, int bookID, int patronID) {
+        if (changeStream != null) {
+            changeStream.publish(type, bookID, patronID, loanTracker.getCurrentTick());
+        }
+    }
+
+    /**
+     * Publishes the changes a borrow, return or delete made to the catalog.
+     *
+     * @param result The result of the borrow, return or delete.
+     */
+    private void publishResult(LibraryActionResult result) {
+        switch (result.outcome) {
+            case BORROWED:
+                publishChange(CatalogChangeStream.EventType.BORROWED, result.bookId, result.patronId);
+                break;
+            case RESERVED:
+                publishChange(CatalogChangeStream.EventType.RESERVED, result.bookId, result.patronId);
+                break;
+            case RETURNED:
+                publishChange(CatalogChangeStream.EventType.RETURNED, result.bookId, result.patronId);
+                break;
+            case ALLOTTED:
+                publishChange(CatalogChangeStream.EventType.RETURNED, result.bookId, result.patronId);
+                publishChange(CatalogChangeStream.EventType.ALLOTTED, result.bookId, result.allottedPatronId);
+                break;
+            case DELETED:
+                publishChange(CatalogChangeStream.EventType.DELETED, result.bookId, -1);
+                for (int patronId : result.cancelledPatronIds) {
+                    publishChange(CatalogChangeStream.EventType.RESERVATION_CANCELLED, result.bookId, patronId);
+                }
+                break;
+            default:
+                // The book is not in the catalog, nothing changed
+                break;
+        }
+    }
+
+    /**
+     * Updates the ID bitmaps for a book.
+     *
+     * @param bookID The ID of the book.
+     * @param book   The book, or null if it is no longer in the catalog.
+     */
+    private void indexBook(int bookID, BookNode book) {
+        bookIds.set(bookID, book != null);
+        availableBookIds.set(bookID, book != null && book.isBookAvailabilityStatus());
+    }
+
+    /**
+     * Performs the action of flushing the output: returns once everything
+     * written before it has reached the output file.
+     */
+    public void performFlushAction() {
+        try {
+            writer.flush();
+        } catch (Exception e) {
+
+        }
     }
 
     /**
@@ -204,11 +640,71 @@ public class GatorLibServices {
         }
     }
 
+    /**
+     * Performs the action of printing the hit and invalidation counters of the
+     * PrintBook and PrintBooks caches.
+     */
+    public void performCacheStatsAction() {
+        try {
+            writer.write("Render Cache: hits = " + renderCache.getHitCount() + ", misses = "
+                    + renderCache.getMissCount() + "\n");
+            writer.write("Range Cache: hits = " + rangeCache.getHitCount() + ", misses = "
+                    + rangeCache.getMissCount() + ", hit rate = "
+                    + String.format("%.2f", rangeCache.getHitRate()) + ", invalidations = "
+                    + rangeCache.getInvalidationCount() + ", evictions = " + rangeCache.getEvictionCount()
+                    + ", entries = " + rangeCache.getEntryCount() + "\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Performs the action of printing the structural telemetry of the Red-Black
+     * tree: its shape, rotations and rebalancing cases. A B+tree catalog only
+     * reports its shape.
+     */
+    public void performTreeStatsAction() {
+        try {
+            RedBlackTreeStats stats = rb.getTreeStats();
+            if (!rb.isRedBlackTree()) {
+                writer.write("Tree Shape: nodes = " + stats.nodeCount + ", height = " + stats.height
+                        + ", average search depth = " + String.format("%.2f", stats.getAverageSearchDepth()) + "\n");
+                writer.write("Rotations and fixup cases do not apply to a B+tree catalog\n");
+                writer.write("\n");
+                return;
+            }
+            writer.write("Tree Shape: nodes = " + stats.nodeCount + ", height = " + stats.height
+                    + ", black height = " + stats.blackHeight + ", average search depth = "
+                    + String.format("%.2f", stats.getAverageSearchDepth()) + "\n");
+            writer.write("Rotations: left = " + stats.leftRotationCount + ", right = " + stats.rightRotationCount
+                    + ", color flips = " + stats.colorFlipCount + "\n");
+            writer.write("Insert Fixup Cases:" + formatCaseCounts(stats.insertFixupCaseCounts) + "\n");
+            writer.write("Delete Fixup Cases:" + formatCaseCounts(stats.deleteFixupCaseCounts) + "\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    private static String formatCaseCounts(long[] caseCounts) {
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 1; i < caseCounts.length; i++) {
+            formatted.append(i == 1 ? " " : ", ").append(i).append(" = ").append(caseCounts[i]);
+        }
+        return formatted.toString();
+    }
+
     /**
      * Performs the action of printing the color flip count of the Red-Black tree.
      */
     public void performColourFlipCountAction() {
         try {
+            if (!rb.isRedBlackTree()) {
+                writer.write("Color Flip Count does not apply to a B+tree catalog\n");
+                writer.write("\n");
+                return;
+            }
             writer.write(
                     "Color Flip Count: " + rb.getColorFilpCount() + "\n");
             writer.write("\n");
@@ -217,6 +713,141 @@ public class GatorLibServices {
         }
     }
 
+    /**
+     * Writes the details of one book in the PrintBook output format.
+     *
+     * @param bookDetails The book to write.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writeBookDetails(BookNode bookDetails) throws IOException {
+        writer.write(renderBookDetails(bookDetails));
+    }
+
+    /**
+     * Renders the details of one book in the PrintBook output format.
+     *
+     * @param bookDetails The book to render.
+     * @return The rendered details, including the trailing blank line.
+     */
+    private String renderBookDetails(BookNode bookDetails) {
+        StringBuilder rendered = new StringBuilder();
+        rendered.append("BookID = ").append(bookDetails.getBookId()).append("\n");
+        rendered.append("Title = ").append(bookDetails.getBookName()).append("\n");
+        rendered.append("Author = ").append(bookDetails.getBookAuthorName()).append("\n");
+        rendered.append("Availability = ").append(bookDetails.isBookAvailabilityStatus() ? "Yes" : "No")
+                .append("\n");
+        rendered.append("BorrowedBy = ")
+                .append(bookDetails.getBookBorrowedBy() != -1 ? bookDetails.getBookBorrowedBy() : "None")
+                .append("\n");
+        ArrayList<BookWaitList> reservationList = bookDetails.getBookReservationQueue()
+                .getBookReservationList();
+        rendered.append("Reservations = [");
+        for (int i = 0; i < reservationList.size(); i++) {
+            rendered.append(" ").append(reservationList.get(i).getPatronId())
+                    .append(i != reservationList.size() - 1 ? "," : " ");
+        }
+        rendered.append("]\n");
+        rendered.append("\n");
+        return rendered.toString();
+    }
+
+    /**
+     * Formats the status line of a borrow.
+     *
+     * @param result The result of the borrow.
+     * @return The status line, without its line break.
+     */
+    private String formatBorrowStatus(LibraryActionResult result) {
+        return "Book " + result.bookId
+                + (result.outcome == LibraryActionResult.Outcome.BORROWED ? " Borrowed by Patron "
+                        : " Reserved by Patron ")
+                + result.patronId;
+    }
+
+    /**
+     * Formats the status line of a return.
+     *
+     * @param result The result of the return.
+     * @return The status line, without its line break.
+     */
+    private String formatReturnStatus(LibraryActionResult result) {
+        return "Book " + result.bookId + " Return by Patron " + result.patronId;
+    }
+
+    /**
+     * Formats the status line of the allotment of a returned book to the next
+     * patron in its waitlist.
+     *
+     * @param result The result of the return.
+     * @return The status line, without its line break.
+     */
+    private String formatAllotmentStatus(LibraryActionResult result) {
+        return "Book " + result.bookId + " Alloted to Patron " + result.allottedPatronId;
+    }
+
+    /**
+     * Formats the status line of a deletion, listing the patrons whose
+     * reservations are cancelled with the book.
+     *
+     * @param result The result of the deletion.
+     * @return The status line, without its line break, or an empty line if the
+     *         book was not found.
+     */
+    private String formatDeletionStatus(LibraryActionResult result) {
+        if (result.outcome == LibraryActionResult.Outcome.NOT_FOUND) {
+            return "";
+        }
+        StringBuilder status = new StringBuilder();
+        status.append("Book ").append(result.bookId).append(" is no longer available.");
+        int[] cancelled = result.cancelledPatronIds;
+        if (cancelled.length > 0) {
+            status.append(cancelled.length > 1 ? "Reservations made by Patrons" : "Reservation made by Patron");
+            for (int i = 0; i < cancelled.length; i++) {
+                status.append(" ").append(cancelled[i]).append(i != cancelled.length - 1 ? "," : " ");
+            }
+            status.append(" have been cancelled!");
+        }
+        return status.toString();
+    }
+
+    /**
+     * Performs the action of counting the available books within a range of book
+     * IDs.
+     *
+     * @param startbookId The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     */
+    public void performCountAvailableAction(int startbookId, int endBookID) {
+        try {
+            int count = availableBookIds.rangeCardinality(startbookId, endBookID);
+            writer.write(count + (count == 1 ? " book" : " books") + " available between Book " + startbookId
+                    + " and Book " + endBookID + "\n");
+            writer.write("\n");
+        } catch (Exception e) {
+
+        }
+    }
+
+    /**
+     * Performs the action of finding the available book with the smallest ID at
+     * or after a specified book ID.
+     *
+     * @param bookID The book ID to start from.
+     */
+    public void performNextAvailableAction(int bookID) {
+        try {
+            BookNode bookDetails = rb.findNextAvailableBook(bookID);
+            if (bookDetails != null) {
+                writeBookDetails(bookDetails);
+            } else {
+                writer.write("No available book from Book " + bookID + "\n");
+                writer.write("\n");
+            }
+        } catch (Exception e) {
+
+        }
+    }
+
     /**
      * Performs the action of finding the closest books to a specified book ID.
      *
@@ -224,32 +855,16 @@ public class GatorLibServices {
      */
     public void performFindClosestBookSearch(int bookID) {
         try {
-            ArrayList<BookNode> closestBookFound = rb.findTheClosestBook(rb.getHeadRedBlackNode(), bookID,
-                    new ArrayList<BookNode>(), Integer.MAX_VALUE);
-            Collections.sort(closestBookFound, (b1, b2) -> Integer.compare(b1.getBookId(), b2.getBookId()));
-
-            for (BookNode bookDetails : closestBookFound) {
-                writer.write("BookID = " + bookDetails.getBookId() + "\n");
-                writer.write("Title = " + bookDetails.getBookName() + "\n");
-                writer.write("Author = " + bookDetails.getBookAuthorName() + "\n");
-                writer.write(
-                        "Availability = " + (bookDetails.isBookAvailabilityStatus() ? "Yes" : "No") + "\n");
-                writer.write("BorrowedBy = "
-                        + (bookDetails.getBookBorrowedBy() != -1 ? bookDetails.getBookBorrowedBy()
-                                : "None")
-                        + "\n");
-                ArrayList<BookWaitList> reservationList = bookDetails.getBookReservationQueue()
-                        .getBookReservationList();
-                String reservation = "";
-                for (int i = 0; i < reservationList.size(); i++) {
-                    if (i != reservationList.size() - 1) {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + ",";
-                    } else {
-                        reservation = reservation + " " + reservationList.get(i).getPatronId() + " ";
-                    }
-                }
-                writer.write("Reservations = [" + reservation + "]\n");
-                writer.write("\n");
+            // The nearest IDs come from bit scans, only the books to print are looked up
+            Integer floor = bookIds.floor(bookID);
+            Integer ceiling = bookIds.ceiling(bookID);
+            long floorDistance = floor == null ? Long.MAX_VALUE : (long) bookID - floor;
+            long ceilingDistance = ceiling == null ? Long.MAX_VALUE : (long) ceiling - bookID;
+            if (floor != null && floorDistance <= ceilingDistance) {
+                writeBookDetails(rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), floor).getBook());
+            }
+            if (ceiling != null && ceilingDistance <= floorDistance && !ceiling.equals(floor)) {
+                writeBookDetails(rb.searchWithInRedBlackTree(rb.getHeadRedBlackNode(), ceiling).getBook());
             }
         } catch (Exception e) {
             // TODO: handle exception
@@ -0,0 +1,131 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * The `HoldExpiryQueue` class keeps the holds of the Gator Library Book
+ * Management System. When a returned book is allotted to the next patron in
+ * its waitlist, that patron gets a hold that must be picked up within the hold
+ * window; a hold that is not picked up in time expires and the book rolls to
+ * the next patron.
+ * Holds wait in a delay queue ordered by expiry time (then book ID, so ties
+ * expire in the same order on every replay), and only holds that are due are
+ * ever taken from it. Picked up or cancelled holds are dropped from the queue
+ * lazily when they reach its head, and the queue is compacted when such stale
+ * entries outnumber the live holds.
+ * Times are ticks of the library's logical clock.
+ */
+public class HoldExpiryQueue {
+
+    /**
+     * A hold of a book for the patron it was allotted to.
+     */
+    static final class Hold {
+        final int bookId;
+        final int patronId;
+        final long expiryTick;
+
+        Hold(int bookId, int patronId, long expiryTick) {
+            this.bookId = bookId;
+            this.patronId = patronId;
+            this.expiryTick = expiryTick;
+        }
+    }
+
+    private final long holdWindowTicks;
+    private final PriorityQueue<Hold> pendingExpiries = new PriorityQueue<>((h1, h2) -> h1.expiryTick != h2.expiryTick
+            ? Long.compare(h1.expiryTick, h2.expiryTick)
+            : Integer.compare(h1.bookId, h2.bookId));
+    // Live hold of each held book, by book ID
+    private final HashMap<Integer, Hold> activeHolds = new HashMap<>();
+
+    /**
+     * Constructs an empty queue whose holds last the given number of ticks.
+     *
+     * @param holdWindowTicks The time a patron has to pick up an allotted book.
+     */
+    public HoldExpiryQueue(long holdWindowTicks) {
+        this.holdWindowTicks = holdWindowTicks;
+    }
+
+    /**
+     * Places a hold on a book for the patron it was allotted to, replacing any
+     * previous hold on the book.
+     *
+     * @param bookId    The ID of the book.
+     * @param patronId  The ID of the patron the book was allotted to.
+     * @param allotTick The logical time of the allotment.
+     */
+    public synchronized void placeHold(int bookId, int patronId, long allotTick) {
+        Hold hold = new Hold(bookId, patronId, allotTick + holdWindowTicks);
+        activeHolds.put(bookId, hold);
+        pendingExpiries.add(hold);
+        compactIfStale();
+    }
+
+    /**
+     * Ends the hold on a book because it was picked up by the patron.
+     *
+     * @param bookId   The ID of the book.
+     * @param patronId The ID of the patron picking it up.
+     * @return True if the patron held the book.
+     */
+    public synchronized boolean pickUp(int bookId, int patronId) {
+        Hold hold = activeHolds.get(bookId);
+        if (hold == null || hold.patronId != patronId) {
+            return false;
+        }
+        activeHolds.remove(bookId);
+        return true;
+    }
+
+    /**
+     * Drops the hold on a book, for example because the book was deleted or its
+     * borrower changed.
+     *
+     * @param bookId The ID of the book.
+     */
+    public synchronized void cancel(int bookId) {
+        activeHolds.remove(bookId);
+    }
+
+    /**
+     * Drops every hold whose book is no longer held by the same patron, after the
+     * catalog changed in bulk.
+     *
+     * @param books Every book in the catalog.
+     */
+    public synchronized void retainValid(Collection<BookNode> books) {
+        HashMap<Integer, BookNode> booksById = new HashMap<>();
+        for (BookNode book : books) {
+            booksById.put(book.getBookId(), book);
+        }
+        activeHolds.values().removeIf(hold -> booksById.get(hold.bookId) == null
+                || booksById.get(hold.bookId).getBookBorrowedBy() != hold.patronId);
+    }
+
+    /**
+     * Removes and returns the earliest hold that expires at or before the given
+     * time.
+     *
+     * @param now The logical time.
+     * @return The expired hold, or null if no hold is due.
+     */
+    public synchronized Hold pollExpired(long now) {
+        while (!pendingExpiries.isEmpty() && pendingExpiries.peek().expiryTick <= now) {
+            Hold hold = pendingExpiries.poll();
+            if (activeHolds.get(hold.bookId) == hold) {
+                activeHolds.remove(hold.bookId);
+                return hold;
+            }
+        }
+        return null;
+    }
+
+    private void compactIfStale() {
+        if (pendingExpiries.size() > 2 * activeHolds.size() + LibraryActionConstant.HOLD_QUEUE_MIN_COMPACT_SIZE) {
+            pendingExpiries.clear();
+            pendingExpiries.addAll(activeHolds.values());
+        }
+    }
+}
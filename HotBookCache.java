@@ -0,0 +1,133 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The `HotBookCache` class remembers the Red-Black Tree nodes of recently
+ * accessed books in the Gator Library Book Management System, so lookups of
+ * popular books skip the descent from the root.
+ * Borrow and return traffic is heavily skewed towards a few books, but a
+ * plain least-recently-used cache would let a burst of one-off lookups flush
+ * them out. Admission therefore follows TinyLFU: every lookup is counted in a
+ * count-min sketch of `HOT_BOOK_SKETCH_DEPTH` rows of 4-bit counters, and
+ * once the cache is full a missed book only replaces the least recently used
+ * entry if the sketch estimates it was looked up more often. Every
+ * `HOT_BOOK_SKETCH_SAMPLE_SIZE` lookups all counters are halved, so the
+ * estimates follow shifts in popularity.
+ * The cache holds tree nodes, so the tree must drop a book whose node leaves
+ * the tree or changes book (see `RedBlackMethod.removeRedBlackNode`) and clear
+ * the cache when it is restructured in bulk.
+ */
+public class HotBookCache {
+
+    private static final int WIDTH_BITS = Integer
+            .numberOfTrailingZeros(LibraryActionConstant.HOT_BOOK_SKETCH_WIDTH);
+    // Largest value of a 4-bit counter
+    private static final int MAX_COUNT = 15;
+
+    // Cached nodes in least-recently-used first order
+    private final LinkedHashMap<Integer, RedBlackNode> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+    // counts[row][column] of the count-min sketch
+    private final byte[][] counts = new byte[LibraryActionConstant.HOT_BOOK_SKETCH_DEPTH]
+            [LibraryActionConstant.HOT_BOOK_SKETCH_WIDTH];
+    // Odd multiplier hashing book IDs to the columns of each row
+    private final long[] rowSeeds = new long[LibraryActionConstant.HOT_BOOK_SKETCH_DEPTH];
+    // Lookups counted since the counters were last halved
+    private int sampledLookups = 0;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The number of nodes the cache holds.
+     */
+    public HotBookCache(int capacity) {
+        this.capacity = capacity;
+        SplittableRandom random = new SplittableRandom(LibraryActionConstant.HOT_BOOK_SKETCH_SEED);
+        for (int row = 0; row < rowSeeds.length; row++) {
+            rowSeeds[row] = random.nextLong() | 1;
+        }
+    }
+
+    /**
+     * Counts a lookup of a book and gets its cached node.
+     *
+     * @param bookId The ID of the book.
+     * @return The node of the book, or null on a miss.
+     */
+    public synchronized RedBlackNode get(int bookId) {
+        recordLookup(bookId);
+        return nodes.get(bookId);
+    }
+
+    /**
+     * Offers the node of a book that missed the cache. It is cached if there is
+     * room, or if the book is looked up more often than the least recently used
+     * cached book, which it then replaces.
+     *
+     * @param bookId The ID of the book.
+     * @param node   The node holding the book.
+     */
+    public synchronized void admit(int bookId, RedBlackNode node) {
+        if (capacity == 0) {
+            return;
+        }
+        if (nodes.size() == capacity) {
+            Iterator<Map.Entry<Integer, RedBlackNode>> eldest = nodes.entrySet().iterator();
+            int victim = eldest.next().getKey();
+            if (estimate(bookId) <= estimate(victim)) {
+                return;
+            }
+            eldest.remove();
+        }
+        nodes.put(bookId, node);
+    }
+
+    /**
+     * Drops the node of a book, for example because it was deleted or moved to
+     * another node.
+     *
+     * @param bookId The ID of the book.
+     */
+    public synchronized void invalidate(int bookId) {
+        nodes.remove(bookId);
+    }
+
+    /**
+     * Drops every node, keeping the lookup counts.
+     */
+    public synchronized void clear() {
+        nodes.clear();
+    }
+
+    private void recordLookup(int bookId) {
+        for (int row = 0; row < counts.length; row++) {
+            int column = column(row, bookId);
+            if (counts[row][column] < MAX_COUNT) {
+                counts[row][column]++;
+            }
+        }
+        if (++sampledLookups == LibraryActionConstant.HOT_BOOK_SKETCH_SAMPLE_SIZE) {
+            // Age the counts so books that cooled down can be replaced
+            for (byte[] row : counts) {
+                for (int column = 0; column < row.length; column++) {
+                    row[column] >>= 1;
+                }
+            }
+            sampledLookups = 0;
+        }
+    }
+
+    private int estimate(int bookId) {
+        int estimate = MAX_COUNT;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][column(row, bookId)]);
+        }
+        return estimate;
+    }
+
+    private int column(int row, int bookId) {
+        return (int) ((bookId * rowSeeds[row]) >>> (Long.SIZE - WIDTH_BITS));
+    }
+}
@@ -6,14 +6,105 @@
 public class LibraryActionConstant {
     static final String PRINT_BOOK = "PrintBook";
     static final String PRINT_BOOKS = "PrintBooks";
+    static final String PRINT_BOOKS_BY_IDS = "PrintBooksByIds";
     static final String INSERT_BOOK = "InsertBook";
     static final String BORROW_BOOK = "BorrowBook";
     static final String RETURN_BOOK = "ReturnBook";
     static final String DELETE_BOOK = "DeleteBook";
+    static final String DELETE_BOOKS = "DeleteBooks";
+    static final String EXTRACT_BOOKS = "ExtractBooks";
+    static final String UNION_CATALOG = "UnionCatalog";
+    static final String INTERSECT_CATALOG = "IntersectCatalog";
+    static final String DIFFERENCE_CATALOG = "DifferenceCatalog";
+    static final String OVERDUE = "Overdue";
+    static final String TOP_BOOKS = "TopBooks";
+    static final String ADVANCE_CLOCK = "AdvanceClock";
+    static final String PICK_UP_BOOK = "PickUpBook";
     static final String FIND_CLOSEST_BOOK = "FindClosestBook";
+    static final String COUNT_AVAILABLE = "CountAvailable";
+    static final String NEXT_AVAILABLE = "NextAvailable";
     static final String FIND_COLOUR_FLIP_COUNT = "ColorFlipCount";
     static final String QUIT = "Quit";
+    static final String REPLICATION_LAG = "ReplicationLag";
+    static final String CACHE_STATS = "CacheStats";
+    static final String TREE_STATS = "TreeStats";
+    static final String FLUSH = "Flush";
     static final String RED_BLACK_RED_COLOR_NODE = "RED";
     static final String RED_BLACK_BLACK_COLOR_NODE = "BLACK";
     static final int PRORITY_MAX_HEAP_SIZE = 20;
+    static final String SHARDS_OPTION = "--shards=";
+    static final int SHARD_INITIAL_KEY_SPACE = 1024;
+    static final int SHARD_MIN_REBALANCE_SIZE = 64;
+    static final int SHARD_REBALANCE_FACTOR = 2;
+    static final String LEAD_OPTION = "--lead=";
+    static final String FOLLOW_OPTION = "--follow=";
+    static final int REPLICATION_LOG_RETENTION = 1 << 16;
+    static final long REPLICATION_CONNECT_RETRY_MS = 200;
+    static final long REPLICATION_SYNC_TIMEOUT_MS = 5000;
+    static final long REPLICATION_DRAIN_TIMEOUT_MS = 5000;
+    static final String PERSISTENT_OPTION = "--persistent";
+    static final long RENDER_CACHE_MAX_CHARS = 1 << 20;
+    static final int RANGE_CACHE_MAX_ENTRIES = 1024;
+    static final long RANGE_CACHE_MAX_CHARS = 4 << 20;
+    static final long RANGE_CACHE_SEED = 0x5EEDL;
+    static final String KEEP_LEFT_POLICY = "KeepLeft";
+    static final String KEEP_RIGHT_POLICY = "KeepRight";
+    static final String MERGE_RESERVATIONS_POLICY = "MergeReservations";
+    static final int SET_OPERATION_SEQUENTIAL_BLACK_HEIGHT = 6;
+    static final String PARALLEL_OPTION = "--parallel=";
+    static final int PARALLEL_REPLAY_BATCH_SIZE = 4096;
+    static final long LOAN_PERIOD_TICKS = 14;
+    static final int LOAN_WHEEL_SLOTS = 64;
+    static final int LOAN_WHEEL_LEVELS = 4;
+    static final String HOLD_WINDOW_OPTION = "--hold-window=";
+    static final long HOLD_WINDOW_TICKS = 3;
+    static final int HOLD_QUEUE_MIN_COMPACT_SIZE = 64;
+    static final String POPULARITY_HALF_LIFE_OPTION = "--popularity-half-life=";
+    static final long POPULARITY_HALF_LIFE_TICKS = 0;
+    static final int POPULARITY_SKETCH_DEPTH = 4;
+    static final int POPULARITY_SKETCH_WIDTH = 2048;
+    static final int POPULARITY_TOP_CAPACITY = 64;
+    static final long POPULARITY_SKETCH_SEED = 0xB00CL;
+    static final String BPLUS_OPTION = "--bplus";
+    // 16 int keys fill one 64-byte cache line
+    static final int BPLUS_PAGE_CAPACITY = 16;
+    // Chunks with more IDs switch from a sorted array to an 8 KB bitset
+    static final int BITMAP_ARRAY_CONTAINER_MAX = 4096;
+    static final String ASYNC_OUTPUT_OPTION = "--async-output";
+    static final String FLUSH_INTERVAL_OPTION = "--flush-interval=";
+    static final long ASYNC_OUTPUT_FLUSH_INTERVAL_MS = 100;
+    static final int ASYNC_OUTPUT_CHUNK_CHARS = 1 << 16;
+    static final int ASYNC_OUTPUT_QUEUE_CHUNKS = 8;
+    static final String PARSE_THREADS_OPTION = "--parse-threads=";
+    static final int PARSE_CHUNK_BYTES = 1 << 20;
+    // Parsed chunks waiting for the executor, per parse thread
+    static final int PARSE_CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+    static final String BRANCH_THREADS_OPTION = "--branch-threads=";
+    static final String CHANGE_LOG_OPTION = "--change-log";
+    static final int CDC_RING_CAPACITY = 1 << 16;
+    static final int CDC_POLL_BATCH = 256;
+    static final long CDC_SINK_POLL_INTERVAL_MS = 100;
+    static final int HOT_BOOK_CACHE_CAPACITY = 256;
+    static final int HOT_BOOK_SKETCH_DEPTH = 4;
+    static final int HOT_BOOK_SKETCH_WIDTH = 4096;
+    // Lookups between two halvings of the admission counts
+    static final int HOT_BOOK_SKETCH_SAMPLE_SIZE = 10 * HOT_BOOK_SKETCH_WIDTH;
+    static final long HOT_BOOK_SKETCH_SEED = 0x40B00CL;
+    static final String TIERED_OPTION = "--tiered";
+    static final String MEMTABLE_BOOKS_OPTION = "--memtable-books=";
+    // Books and deletions the memtable holds before it is flushed to a segment
+    static final int TIERED_MEMTABLE_BOOKS = 1 << 16;
+    // Records per segment block, one sparse index entry each
+    static final int SEGMENT_BLOCK_BOOKS = 64;
+    static final int SEGMENT_BLOOM_BITS_PER_BOOK = 10;
+    static final int SEGMENT_BLOOM_HASHES = 7;
+    static final long SEGMENT_BLOOM_SEED = 0x5E6B00CL;
+    // Segments of one tier merged into one segment of the next tier
+    static final int TIERED_COMPACTION_FAN_IN = 4;
+    // Longest wait at exit for a running compaction before the segments are deleted
+    static final long TIERED_SHUTDOWN_TIMEOUT_MS = 10_000;
+    static final String CONFLICTING_CATALOG_OPTIONS_MESSAGE =
+            "Choose at most one of --shards, --persistent, --bplus and --tiered";
+    static final String CONFLICTING_REPLAY_OPTIONS_MESSAGE =
+            "Choose at most one of --parallel and --parse-threads";
 }
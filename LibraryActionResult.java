@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+
+/**
+ * The `LibraryActionResult` class is the outcome of a borrow, return or delete
+ * in the Gator Library Book Management System as reported by the catalog.
+ * It only carries an outcome code and the IDs involved; turning it into status
+ * lines is left to the output layer in `GatorLibServices`, so the catalog
+ * builds no strings and other output formats need not parse any.
+ */
+public class LibraryActionResult {
+
+    /**
+     * What a borrow, return or delete did.
+     */
+    enum Outcome {
+        // The book was available and is now borrowed by the patron
+        BORROWED,
+        // The book was not available and the patron joined its waitlist
+        RESERVED,
+        // The book was returned and is available again
+        RETURNED,
+        // The book was returned and allotted to the next patron in its waitlist
+        ALLOTTED,
+        // The book was deleted, cancelling its reservations
+        DELETED,
+        // The book is not in the catalog
+        NOT_FOUND
+    }
+
+    private static final int[] NO_PATRONS = new int[0];
+
+    static final LibraryActionResult NOT_FOUND = new LibraryActionResult(Outcome.NOT_FOUND, -1, -1, -1,
+            NO_PATRONS);
+
+    final Outcome outcome;
+    final int bookId;
+    // The patron who borrowed, reserved or returned the book
+    final int patronId;
+    // The patron a returned book was allotted to, -1 if none
+    final int allottedPatronId;
+    // The patrons whose reservations a delete cancelled, in waitlist order
+    final int[] cancelledPatronIds;
+
+    private LibraryActionResult(Outcome outcome, int bookId, int patronId, int allottedPatronId,
+            int[] cancelledPatronIds) {
+        this.outcome = outcome;
+        this.bookId = bookId;
+        this.patronId = patronId;
+        this.allottedPatronId = allottedPatronId;
+        this.cancelledPatronIds = cancelledPatronIds;
+    }
+
+    static LibraryActionResult borrowed(int bookId, int patronId) {
+        return new LibraryActionResult(Outcome.BORROWED, bookId, patronId, -1, NO_PATRONS);
+    }
+
+    static LibraryActionResult reserved(int bookId, int patronId) {
+        return new LibraryActionResult(Outcome.RESERVED, bookId, patronId, -1, NO_PATRONS);
+    }
+
+    static LibraryActionResult returned(int bookId, int patronId) {
+        return new LibraryActionResult(Outcome.RETURNED, bookId, patronId, -1, NO_PATRONS);
+    }
+
+    static LibraryActionResult allotted(int bookId, int patronId, int allottedPatronId) {
+        return new LibraryActionResult(Outcome.ALLOTTED, bookId, patronId, allottedPatronId, NO_PATRONS);
+    }
+
+    /**
+     * Builds the result of deleting a book, recording the patrons still waiting
+     * for it.
+     *
+     * @param book The book being deleted.
+     * @return The result of the deletion.
+     */
+    static LibraryActionResult deleted(BookNode book) {
+        ArrayList<BookWaitList> waitList = book.getBookReservationQueue().waitListHeap;
+        int[] cancelledPatronIds = waitList.isEmpty() ? NO_PATRONS : new int[waitList.size()];
+        for (int i = 0; i < cancelledPatronIds.length; i++) {
+            cancelledPatronIds[i] = waitList.get(i).getPatronId();
+        }
+        return new LibraryActionResult(Outcome.DELETED, book.getBookId(), -1, -1, cancelledPatronIds);
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * The `LibraryCommand` class is one parsed command of the Gator Library Book
+ * Management System: the library action and its arguments, decoded from the
+ * text of an input line once so the command can be executed without touching
+ * the text again.
+ * Numeric arguments are kept as primitives in command order; InsertBook keeps
+ * its title and author, and the catalog set operations their file name and
+ * conflict policy. Parsing is free of side effects, so lines can be parsed on
+ * any thread ahead of their execution. A line that cannot be parsed becomes a
+ * command carrying the failure, which is thrown when the command is executed,
+ * at the point where the line-by-line run stops.
+ */
+public class LibraryCommand {
+
+    private static final long[] NO_ARGUMENTS = new long[0];
+
+    final String libraryAction;
+    // Numeric arguments in command order
+    long[] arguments = NO_ARGUMENTS;
+    // Title and author of InsertBook
+    String bookName;
+    String bookAuthorName;
+    boolean bookAvailabilityStatus;
+    // File name and conflict policy of the catalog set operations
+    String fileName;
+    CatalogSetOperations.ConflictPolicy policy;
+    // The failure parsing the line, thrown when the command is executed
+    RuntimeException parseFailure;
+
+    private LibraryCommand(String libraryAction) {
+        this.libraryAction = libraryAction;
+    }
+
+    /**
+     * Parses a non-blank input line.
+     *
+     * @param line The input line.
+     * @return The command, or a command carrying the failure if the line cannot
+     *         be parsed.
+     */
+    public static LibraryCommand parseLine(String line) {
+        try {
+            return parse(line.substring(0, line.indexOf('(')).trim(), line);
+        } catch (RuntimeException e) {
+            LibraryCommand failed = new LibraryCommand(null);
+            failed.parseFailure = e;
+            return failed;
+        }
+    }
+
+    /**
+     * Parses the arguments of a library action.
+     *
+     * @param libraryAction The library action.
+     * @param dataString    The full command line.
+     * @return The command.
+     * @throws RuntimeException If the arguments cannot be parsed.
+     */
+    public static LibraryCommand parse(String libraryAction, String dataString) {
+        LibraryCommand command = new LibraryCommand(libraryAction);
+        switch (libraryAction) {
+            // PrintBooks(lo, hi) or the paginated PrintBooks(lo, hi, limit, afterId)
+            case LibraryActionConstant.PRINT_BOOKS: {
+                String parseString[] = argumentsOf(dataString).split(",", 4);
+                command.parseArguments(parseString, parseString.length == 4 ? 4 : 2, false);
+            }
+                break;
+
+            case LibraryActionConstant.INSERT_BOOK: {
+                String dataStringTrimmed = dataString.trim();
+                String inputData = dataStringTrimmed.substring(dataString.indexOf('(') + 1,
+                        dataStringTrimmed.length() - 1);
+                String parseString[] = inputData.split(",", 4);
+                command.parseArguments(parseString, 1, false);
+                command.bookName = parseString[1].trim();
+                command.bookAuthorName = parseString[2].trim();
+                command.bookAvailabilityStatus = parseString[3].trim().equalsIgnoreCase("\"Yes\"");
+            }
+                break;
+
+            // PrintBooksByIds(id1, id2, ...), any number of book IDs
+            case LibraryActionConstant.PRINT_BOOKS_BY_IDS: {
+                String inputData = argumentsOf(dataString);
+                String parseString[] = inputData.isBlank() ? new String[0] : inputData.split(",");
+                command.parseArguments(parseString, parseString.length, false);
+            }
+                break;
+
+            // BorrowBook(patronID, bookID, priority)
+            case LibraryActionConstant.BORROW_BOOK:
+                command.parseArguments(argumentsOf(dataString).split(",", 3), 3, false);
+                break;
+
+            // Actions taking two numbers
+            case LibraryActionConstant.RETURN_BOOK:
+            case LibraryActionConstant.DELETE_BOOKS:
+            case LibraryActionConstant.EXTRACT_BOOKS:
+            case LibraryActionConstant.COUNT_AVAILABLE:
+            case LibraryActionConstant.PICK_UP_BOOK:
+                command.parseArguments(argumentsOf(dataString).split(",", 2), 2, false);
+                break;
+
+            // Actions taking one number
+            case LibraryActionConstant.PRINT_BOOK:
+            case LibraryActionConstant.DELETE_BOOK:
+            case LibraryActionConstant.FIND_CLOSEST_BOOK:
+            case LibraryActionConstant.NEXT_AVAILABLE:
+            case LibraryActionConstant.TOP_BOOKS:
+                command.parseArguments(new String[] { argumentsOf(dataString) }, 1, false);
+                break;
+
+            // Actions taking one logical time
+            case LibraryActionConstant.ADVANCE_CLOCK:
+            case LibraryActionConstant.OVERDUE:
+                command.parseArguments(new String[] { argumentsOf(dataString) }, 1, true);
+                break;
+
+            case LibraryActionConstant.UNION_CATALOG:
+            case LibraryActionConstant.INTERSECT_CATALOG:
+            case LibraryActionConstant.DIFFERENCE_CATALOG: {
+                String parseString[] = argumentsOf(dataString).split(",", 2);
+                command.fileName = parseString[0].trim().replace("\"", "");
+                command.policy = parseString.length == 2
+                        ? CatalogSetOperations.ConflictPolicy.fromCommandName(parseString[1].trim())
+                        : CatalogSetOperations.ConflictPolicy.KEEP_LEFT;
+            }
+                break;
+
+            default:
+                // Actions without arguments, and unknown actions
+                break;
+        }
+        return command;
+    }
+
+    /**
+     * Gets the text between the parentheses of a command line.
+     */
+    private static String argumentsOf(String dataString) {
+        String dataStringTrimmed = dataString.trim();
+        return dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1, dataStringTrimmed.length() - 1);
+    }
+
+    /**
+     * Parses the leading numeric arguments of a command.
+     *
+     * @param parseString The argument texts.
+     * @param count       The number of arguments to parse.
+     * @param wide        True to parse longs, false to parse ints.
+     */
+    private void parseArguments(String[] parseString, int count, boolean wide) {
+        arguments = new long[count];
+        for (int i = 0; i < count; i++) {
+            String argument = parseString[i].trim();
+            arguments[i] = wide ? Long.parseLong(argument) : Integer.parseInt(argument);
+        }
+    }
+}
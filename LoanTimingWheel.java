@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+
+/**
+ * The `LoanTimingWheel` class schedules loan due dates for the Gator Library
+ * Book Management System on a hierarchical timing wheel.
+ * Time is measured in logical ticks. The wheel has `LOAN_WHEEL_LEVELS` levels
+ * of `LOAN_WHEEL_SLOTS` slots each; a slot of level k spans SLOTS^k ticks, so
+ * a loan due far in the future sits in a coarse slot and cascades down a level
+ * whenever the wheel below it completes a turn. Loans due beyond the top level
+ * wait in an overflow list that is re-examined once per top-level turn.
+ * Scheduling and cancelling are O(1) (each slot is a doubly linked list), and
+ * advancing the clock only touches the slots that come due, jumping straight
+ * over stretches where the lower levels are empty.
+ */
+public class LoanTimingWheel {
+
+    /**
+     * A scheduled loan, linked into the slot that holds it.
+     */
+    static final class Loan {
+        final int bookId;
+        final int patronId;
+        final long dueTick;
+        // Level holding the loan, OVERFLOW or EXPIRED when not in a slot
+        int level = UNSCHEDULED;
+        Loan previous;
+        Loan next;
+
+        Loan(int bookId, int patronId, long dueTick) {
+            this.bookId = bookId;
+            this.patronId = patronId;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private static final int UNSCHEDULED = -1;
+    private static final int OVERFLOW = -2;
+    private static final int EXPIRED = -3;
+
+    private static final int SLOT_BITS = Integer.numberOfTrailingZeros(LibraryActionConstant.LOAN_WHEEL_SLOTS);
+    private static final int SLOT_MASK = LibraryActionConstant.LOAN_WHEEL_SLOTS - 1;
+    private static final int LEVELS = LibraryActionConstant.LOAN_WHEEL_LEVELS;
+
+    // slots[level][slot] is the first loan of the slot's list
+    private final Loan[][] slots = new Loan[LEVELS][LibraryActionConstant.LOAN_WHEEL_SLOTS];
+    // Number of loans held by each level
+    private final int[] levelSizes = new int[LEVELS];
+    // Loans due beyond the span of the top level
+    private Loan overflow = null;
+    // Loans scheduled at or before the current tick, expired on the next advance
+    private Loan expired = null;
+    private int size = 0;
+    private long currentTick;
+
+    /**
+     * Constructs an empty wheel starting at the given tick.
+     *
+     * @param startTick The initial logical time.
+     */
+    public LoanTimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a loan to expire at its due tick.
+     *
+     * @param loan The loan to schedule, not currently scheduled.
+     */
+    public void schedule(Loan loan) {
+        size++;
+        place(loan);
+    }
+
+    /**
+     * Cancels a scheduled loan, for example because the book was returned.
+     *
+     * @param loan The loan to cancel.
+     */
+    public void cancel(Loan loan) {
+        if (loan.level == UNSCHEDULED) {
+            return;
+        }
+        unlink(loan);
+        size--;
+    }
+
+    /**
+     * Advances the clock to the given tick and collects every loan that came due
+     * on the way. The clock never moves backwards.
+     *
+     * @param now The logical time to advance to.
+     * @return The loans due at or before the new current tick.
+     */
+    public ArrayList<Loan> advanceTo(long now) {
+        ArrayList<Loan> dueLoans = new ArrayList<>();
+        while (currentTick < now && size > 0) {
+            // Levels below the first non-empty one hold nothing, so jump to the next
+            // tick where that level's current slot changes (or, with every level
+            // empty, to the next full turn where the overflow is re-examined)
+            int level = 0;
+            while (level < LEVELS && levelSizes[level] == 0) {
+                level++;
+            }
+            long span = 1L << (SLOT_BITS * level);
+            long nextTick = level == 0 ? currentTick + 1 : (currentTick / span + 1) * span;
+            currentTick = Math.min(nextTick, now);
+            if (currentTick == nextTick) {
+                cascade();
+                drain(slots[0][(int) (currentTick & SLOT_MASK)], dueLoans);
+                slots[0][(int) (currentTick & SLOT_MASK)] = null;
+            }
+        }
+        if (currentTick < now) {
+            currentTick = now;
+        }
+        // Loans scheduled in the past, or cascaded exactly onto their due tick
+        drain(expired, dueLoans);
+        expired = null;
+        return dueLoans;
+    }
+
+    /**
+     * Moves the loans of every higher-level slot that starts at the current tick
+     * down to the levels below, top level first.
+     */
+    private void cascade() {
+        int topLevel = 0;
+        while (topLevel < LEVELS && currentTick % (1L << (SLOT_BITS * (topLevel + 1))) == 0) {
+            topLevel++;
+        }
+        if (topLevel == LEVELS) {
+            Loan waiting = overflow;
+            overflow = null;
+            replace(waiting);
+            topLevel = LEVELS - 1;
+        }
+        for (int level = topLevel; level >= 1; level--) {
+            int slot = (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK);
+            Loan loans = slots[level][slot];
+            slots[level][slot] = null;
+            for (Loan loan = loans; loan != null; loan = loan.next) {
+                levelSizes[level]--;
+            }
+            replace(loans);
+        }
+    }
+
+    /**
+     * Places every loan of a detached list again, relative to the current tick.
+     */
+    private void replace(Loan loans) {
+        Loan loan = loans;
+        while (loan != null) {
+            Loan next = loan.next;
+            loan.previous = null;
+            loan.next = null;
+            loan.level = UNSCHEDULED;
+            place(loan);
+            loan = next;
+        }
+    }
+
+    /**
+     * Removes every loan of a detached slot list from the wheel and adds it to
+     * the due loans.
+     */
+    private void drain(Loan loans, ArrayList<Loan> dueLoans) {
+        Loan loan = loans;
+        while (loan != null) {
+            Loan next = loan.next;
+            if (loan.level == 0) {
+                levelSizes[0]--;
+            }
+            loan.previous = null;
+            loan.next = null;
+            loan.level = UNSCHEDULED;
+            size--;
+            dueLoans.add(loan);
+            loan = next;
+        }
+    }
+
+    /**
+     * Links a loan into the slot of the lowest level whose span covers its due
+     * tick.
+     */
+    private void place(Loan loan) {
+        long delta = loan.dueTick - currentTick;
+        if (delta <= 0) {
+            loan.level = EXPIRED;
+            expired = push(expired, loan);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                int slot = (int) ((loan.dueTick >> (SLOT_BITS * level)) & SLOT_MASK);
+                loan.level = level;
+                slots[level][slot] = push(slots[level][slot], loan);
+                levelSizes[level]++;
+                return;
+            }
+        }
+        loan.level = OVERFLOW;
+        overflow = push(overflow, loan);
+    }
+
+    private static Loan push(Loan head, Loan loan) {
+        loan.previous = null;
+        loan.next = head;
+        if (head != null) {
+            head.previous = loan;
+        }
+        return loan;
+    }
+
+    /**
+     * Unlinks a scheduled loan from whichever list holds it.
+     */
+    private void unlink(Loan loan) {
+        if (loan.previous != null) {
+            loan.previous.next = loan.next;
+        } else if (loan.level == OVERFLOW) {
+            overflow = loan.next;
+        } else if (loan.level == EXPIRED) {
+            expired = loan.next;
+        } else {
+            int slot = (int) ((loan.dueTick >> (SLOT_BITS * loan.level)) & SLOT_MASK);
+            slots[loan.level][slot] = loan.next;
+        }
+        if (loan.next != null) {
+            loan.next.previous = loan.previous;
+        }
+        if (loan.level >= 0) {
+            levelSizes[loan.level]--;
+        }
+        loan.previous = null;
+        loan.next = null;
+        loan.level = UNSCHEDULED;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * The `LoanTracker` class keeps the due date of every active loan in the Gator
+ * Library Book Management System.
+ * The library runs on a logical clock measured in ticks, which only moves when
+ * an Overdue(now) command advances it, so replaying an input file always
+ * produces the same due dates. A loan starts when a book gets a borrower
+ * (BorrowBook, or ReturnBook allotting it to the next patron) and is due
+ * `LOAN_PERIOD_TICKS` ticks later. Due dates are scheduled on a
+ * `LoanTimingWheel`, so starting or ending a loan is O(1) and advancing the
+ * clock only touches loans that come due; loans past their due date stay
+ * overdue until the book is returned.
+ */
+public class LoanTracker {
+
+    private final LoanTimingWheel dueDates = new LoanTimingWheel(0);
+    // Active loan of each borrowed book, by book ID
+    private final HashMap<Integer, LoanTimingWheel.Loan> activeLoans = new HashMap<>();
+    // Loans past their due date, earliest due first
+    private final TreeSet<LoanTimingWheel.Loan> overdueLoans = new TreeSet<>((l1, l2) -> l1.dueTick != l2.dueTick
+            ? Long.compare(l1.dueTick, l2.dueTick)
+            : Integer.compare(l1.bookId, l2.bookId));
+
+    /**
+     * Gets the current logical time.
+     *
+     * @return The current tick.
+     */
+    public synchronized long getCurrentTick() {
+        return dueDates.getCurrentTick();
+    }
+
+    /**
+     * Records the borrower of a book after a command that may have changed it,
+     * starting a loan for a new borrower and ending the loan of a previous one.
+     *
+     * @param bookId The ID of the book.
+     * @param book   The book, or null if it is no longer in the catalog.
+     */
+    public synchronized void updateLoan(int bookId, BookNode book) {
+        int borrower = book == null ? -1 : book.getBookBorrowedBy();
+        LoanTimingWheel.Loan loan = activeLoans.get(bookId);
+        if (loan != null && loan.patronId == borrower) {
+            return;
+        }
+        if (loan != null) {
+            endLoan(loan);
+        }
+        if (borrower != -1) {
+            LoanTimingWheel.Loan newLoan = new LoanTimingWheel.Loan(bookId, borrower,
+                    dueDates.getCurrentTick() + LibraryActionConstant.LOAN_PERIOD_TICKS);
+            activeLoans.put(bookId, newLoan);
+            dueDates.schedule(newLoan);
+        }
+    }
+
+    /**
+     * Rebuilds the loans from the given books after the catalog changed in bulk,
+     * keeping the due date of every loan whose book still has the same borrower.
+     *
+     * @param books Every book in the catalog.
+     */
+    public synchronized void resync(Collection<BookNode> books) {
+        HashMap<Integer, BookNode> booksById = new HashMap<>();
+        for (BookNode book : books) {
+            booksById.put(book.getBookId(), book);
+        }
+        for (LoanTimingWheel.Loan loan : new ArrayList<>(activeLoans.values())) {
+            if (!booksById.containsKey(loan.bookId)) {
+                updateLoan(loan.bookId, null);
+            }
+        }
+        for (BookNode book : books) {
+            updateLoan(book.getBookId(), book);
+        }
+    }
+
+    /**
+     * Advances the logical clock, marking the loans that come due as overdue.
+     *
+     * @param now The logical time to advance to; earlier times leave the clock
+     *            unchanged.
+     */
+    public synchronized void advanceTo(long now) {
+        overdueLoans.addAll(dueDates.advanceTo(now));
+    }
+
+    /**
+     * Gets every loan that is overdue at the current time.
+     *
+     * @return The overdue loans, earliest due first.
+     */
+    public synchronized ArrayList<LoanTimingWheel.Loan> getOverdueLoans() {
+        return new ArrayList<>(overdueLoans);
+    }
+
+    private void endLoan(LoanTimingWheel.Loan loan) {
+        activeLoans.remove(loan.bookId);
+        dueDates.cancel(loan);
+        overdueLoans.remove(loan);
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The `MultiCatalogRunner` class runs the input files of several library
+ * branches in one Gator Library Book Management System process, so the
+ * branches share one JVM instead of paying for its startup and warmup each.
+ * Every branch gets its own catalog, library services and output file from a
+ * `CatalogFactory`, so branches run concurrently on a fixed pool of threads
+ * without taking each other's locks. They still share the process-wide state
+ * of `BookNode`: the atomic counter issuing book version stamps, incremented
+ * by every mutation, and the interned author names. A branch runs its
+ * commands one at a time in input order, exactly as a process of its own
+ * would, and a branch whose input fails only stops itself.
+ */
+public class MultiCatalogRunner {
+
+    /**
+     * Opens the catalog of one branch.
+     */
+    interface CatalogFactory {
+        /**
+         * Creates an empty catalog and its library services, writing to the output
+         * file of the given input file.
+         *
+         * @param inputFileName The input file of the branch.
+         * @return The library services of the branch.
+         * @throws IOException If the output file cannot be created.
+         */
+        GatorLibServices open(String inputFileName) throws IOException;
+    }
+
+    private final CatalogFactory catalogs;
+    private final ExecutorService branchThreads;
+
+    /**
+     * Constructs a runner running branches on the given number of threads.
+     *
+     * @param catalogs    Creates the catalog of each branch.
+     * @param threadCount The number of branch threads.
+     */
+    public MultiCatalogRunner(CatalogFactory catalogs, int threadCount) {
+        this.catalogs = catalogs;
+        this.branchThreads = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "gator-branch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs every input file as a branch of its own and waits until all of them
+     * have finished.
+     *
+     * @param inputFileNames The input files, one per branch.
+     */
+    public void runAll(List<String> inputFileNames) {
+        ArrayList<Future<?>> branches = new ArrayList<>();
+        for (String inputFileName : inputFileNames) {
+            branches.add(branchThreads.submit(() -> {
+                runBranch(inputFileName);
+                return null;
+            }));
+        }
+        for (Future<?> branch : branches) {
+            try {
+                branch.get();
+            } catch (ExecutionException e) {
+                // A failed branch has already stopped; the others carry on
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the branch threads.
+     */
+    public void shutdown() {
+        branchThreads.shutdown();
+    }
+
+    /**
+     * Runs the commands of one input file up to and including Quit against a
+     * catalog of its own.
+     *
+     * @param inputFileName The input file of the branch.
+     * @throws IOException If the input cannot be read or the output written.
+     */
+    private void runBranch(String inputFileName) throws IOException {
+        GatorLibServices services = catalogs.open(inputFileName);
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(inputFileName)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                LibraryCommand command = LibraryCommand.parseLine(line);
+                if (LibraryActionConstant.QUIT.equals(command.libraryAction)) {
+                    services.performQuitAction();
+                    break;
+                }
+                gatorLibrary.performCommand(services, command);
+            }
+        } finally {
+            services.writer.close();
+            if (services.changeStream != null) {
+                services.changeStream.close();
+            }
+        }
+    }
+}
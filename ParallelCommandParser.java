@@ -0,0 +1,172 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The `ParallelCommandParser` class runs a very large input file of the Gator
+ * Library Book Management System with its text parsing spread over several
+ * threads, while the commands still execute one at a time in input order.
+ * The file is read in blocks of about `PARSE_CHUNK_BYTES` bytes cut after the
+ * last line break, so no line spans two blocks. Each block is decoded and
+ * parsed into `LibraryCommand`s by a parse thread, and the main thread executes
+ * the parsed blocks in file order. At most `PARSE_CHUNKS_IN_FLIGHT_PER_THREAD`
+ * blocks per parse thread are read ahead of the one executing, which bounds
+ * the memory used on large files. A line break byte never occurs inside a
+ * multi-byte character of the ASCII-compatible charsets the input is read
+ * with, so the blocks decode exactly like the whole file.
+ */
+public class ParallelCommandParser {
+
+    private static final LibraryCommand[] NO_COMMANDS = new LibraryCommand[0];
+
+    // Library services executing the parsed commands
+    private final GatorLibServices services;
+    private final ExecutorService parsers;
+    private final int maxChunksInFlight;
+
+    /**
+     * Constructs a parser parsing on the given number of threads.
+     *
+     * @param services    The library services executing the commands.
+     * @param threadCount The number of parse threads.
+     */
+    public ParallelCommandParser(GatorLibServices services, int threadCount) {
+        this.services = services;
+        this.parsers = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "gator-parse-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxChunksInFlight = threadCount * LibraryActionConstant.PARSE_CHUNKS_IN_FLIGHT_PER_THREAD;
+    }
+
+    /**
+     * Executes every command of the input file up to and including Quit.
+     *
+     * @param inputFile The input file.
+     * @throws IOException If the input cannot be read.
+     */
+    public void replay(File inputFile) throws IOException {
+        ArrayDeque<Future<LibraryCommand[]>> pending = new ArrayDeque<>();
+        try (InputStream in = new FileInputStream(inputFile)) {
+            byte[] buffer = new byte[LibraryActionConstant.PARSE_CHUNK_BYTES];
+            int filled = 0;
+            boolean endOfFile = false;
+            while (!endOfFile || filled > 0) {
+                while (!endOfFile && filled < buffer.length) {
+                    int read = in.read(buffer, filled, buffer.length - filled);
+                    if (read < 0) {
+                        endOfFile = true;
+                    } else {
+                        filled += read;
+                    }
+                }
+                int end = endOfFile ? filled : lastLineBreak(buffer, filled) + 1;
+                if (end == 0) {
+                    // A single line longer than the buffer
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    continue;
+                }
+                byte[] chunk = buffer;
+                int chunkLength = end;
+                // The partial last line starts the next block; a "\r\n" cut in two
+                // only adds a blank line, which is skipped
+                buffer = new byte[Math.max(LibraryActionConstant.PARSE_CHUNK_BYTES, filled - end)];
+                System.arraycopy(chunk, end, buffer, 0, filled - end);
+                filled -= end;
+                pending.add(parsers.submit(() -> parseChunk(chunk, chunkLength)));
+                if (pending.size() >= maxChunksInFlight && !execute(pending.poll())) {
+                    cancel(pending);
+                    return;
+                }
+            }
+            while (!pending.isEmpty()) {
+                if (!execute(pending.poll())) {
+                    cancel(pending);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the parse threads.
+     */
+    public void shutdown() {
+        parsers.shutdown();
+    }
+
+    /**
+     * Decodes a block of the input file and parses its non-blank lines. Lines
+     * end at "\n", "\r" or "\r\n", as with `BufferedReader.readLine`.
+     */
+    private static LibraryCommand[] parseChunk(byte[] bytes, int length) {
+        String text = new String(bytes, 0, length, Charset.defaultCharset());
+        ArrayList<LibraryCommand> commands = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            String line = text.substring(start, end);
+            if (!line.isBlank()) {
+                commands.add(LibraryCommand.parseLine(line));
+            }
+            if (end + 1 < text.length() && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        return commands.toArray(NO_COMMANDS);
+    }
+
+    /**
+     * Executes the commands of a parsed block in order.
+     *
+     * @return False if the block ended the run with Quit.
+     */
+    private boolean execute(Future<LibraryCommand[]> chunk) {
+        LibraryCommand[] commands;
+        try {
+            commands = chunk.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        for (LibraryCommand command : commands) {
+            if (LibraryActionConstant.QUIT.equals(command.libraryAction)) {
+                services.performQuitAction();
+                return false;
+            }
+            gatorLibrary.performCommand(services, command);
+        }
+        return true;
+    }
+
+    private static void cancel(ArrayDeque<Future<LibraryCommand[]>> pending) {
+        for (Future<LibraryCommand[]> chunk : pending) {
+            chunk.cancel(false);
+        }
+    }
+
+    private static int lastLineBreak(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n' || buffer[i] == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
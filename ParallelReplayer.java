@@ -0,0 +1,250 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The `ParallelReplayer` class replays an input file of the Gator Library Book
+ * Management System on several worker threads while producing exactly the
+ * output of the sequential run.
+ * Commands are read in batches. BorrowBook, ReturnBook, PickUpBook and
+ * PrintBook only touch the book they name, so a run of them between two other
+ * commands forms a wave: its commands are grouped by book ID, each group runs
+ * in input order on one worker, and different groups run concurrently. Every other command
+ * (InsertBook, DeleteBook, PrintBooks, FindClosestBook, ...) changes the tree
+ * structure or reads many books, so it is a barrier executed alone once the
+ * wave before it has finished.
+ * Each command of a wave writes into its own buffer, and the buffers are
+ * written out in input order when the wave completes.
+ * Each worker runs its commands through services of its own, with private
+ * caches, but shares with the main services the catalog (including its hot
+ * book cache), loan tracker, hold queue, popularity tracker, book ID bitmaps
+ * and change stream. The commands of a wave use those objects from several
+ * threads at once, and they are the only objects a run uses concurrently, so
+ * they are the classes whose methods are synchronized.
+ */
+public class ParallelReplayer {
+
+    // Library services executing barrier commands and owning the output writer
+    private final GatorLibServices services;
+    private final ExecutorService workers;
+    // Each worker thread runs wave commands through its own services, whose
+    // caches are never shared between threads
+    private final ThreadLocal<GatorLibServices> workerServices;
+
+    /**
+     * Constructs a replayer executing waves on the given number of worker
+     * threads.
+     *
+     * @param services    The library services of the catalog being replayed.
+     * @param workerCount The number of worker threads.
+     */
+    public ParallelReplayer(GatorLibServices services, int workerCount) {
+        this.services = services;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "gator-replay-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workerServices = ThreadLocal.withInitial(() -> {
+            GatorLibServices worker = new GatorLibServices(services.rb, Writer.nullWriter());
+            // Loans started by a worker must be visible to the main services
+            worker.loanTracker = services.loanTracker;
+            worker.holdQueue = services.holdQueue;
+            worker.popularity = services.popularity;
+            worker.bookIds = services.bookIds;
+            worker.availableBookIds = services.availableBookIds;
+            worker.changeStream = services.changeStream;
+            return worker;
+        });
+    }
+
+    /**
+     * Replays every command read from the input up to and including Quit.
+     *
+     * @param reader The input file.
+     * @throws IOException If the input cannot be read or the output written.
+     */
+    public void replay(BufferedReader reader) throws IOException {
+        ArrayList<String> batch = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(line);
+            if (batch.size() == LibraryActionConstant.PARALLEL_REPLAY_BATCH_SIZE) {
+                if (!replayBatch(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+        replayBatch(batch);
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Checks whether a library action only touches the book it names and can
+     * run concurrently with commands on other books.
+     *
+     * @param libraryAction The library action.
+     * @return True for BorrowBook, ReturnBook, PickUpBook and PrintBook.
+     */
+    static boolean isSingleBookAction(String libraryAction) {
+        return LibraryActionConstant.BORROW_BOOK.equals(libraryAction)
+                || LibraryActionConstant.RETURN_BOOK.equals(libraryAction)
+                || LibraryActionConstant.PICK_UP_BOOK.equals(libraryAction)
+                || LibraryActionConstant.PRINT_BOOK.equals(libraryAction);
+    }
+
+    private static String actionOf(String line) {
+        return line.substring(0, line.indexOf('(')).trim();
+    }
+
+    /**
+     * Gets the ID of the book a single-book command touches.
+     *
+     * @param line The full command line.
+     * @return The book ID, or null if the command is not a well-formed
+     *         single-book command and must run alone.
+     */
+    private static Integer singleBookIdOf(String line) {
+        if (line.indexOf('(') < 0) {
+            return null;
+        }
+        String libraryAction = actionOf(line);
+        if (!isSingleBookAction(libraryAction)) {
+            return null;
+        }
+        String lineTrimmed = line.trim();
+        String[] parseString = lineTrimmed.substring(lineTrimmed.indexOf('(') + 1, lineTrimmed.length() - 1)
+                .split(",");
+        // PrintBook(bookID), BorrowBook(patronID, bookID, priority), ReturnBook(patronID, bookID),
+        // PickUpBook(patronID, bookID)
+        int bookIdIndex = LibraryActionConstant.PRINT_BOOK.equals(libraryAction) ? 0 : 1;
+        try {
+            return parseString.length > bookIdIndex ? Integer.valueOf(parseString[bookIdIndex].trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replays one batch, running each wave of single-book commands in parallel
+     * and each other command alone.
+     *
+     * @param lines The command lines of the batch.
+     * @return False if the batch ended the replay with Quit.
+     * @throws IOException If the output cannot be written.
+     */
+    private boolean replayBatch(List<String> lines) throws IOException {
+        Integer[] bookIds = new Integer[lines.size()];
+        int waveStart = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            bookIds[i] = singleBookIdOf(lines.get(i));
+            if (bookIds[i] != null) {
+                continue;
+            }
+            runWave(lines, bookIds, waveStart, i);
+            waveStart = i + 1;
+            String libraryAction = actionOf(lines.get(i));
+            if (LibraryActionConstant.QUIT.equals(libraryAction)) {
+                services.performQuitAction();
+                return false;
+            }
+            gatorLibrary.libraryActionPerformer(services, libraryAction, lines.get(i));
+        }
+        runWave(lines, bookIds, waveStart, lines.size());
+        return true;
+    }
+
+    /**
+     * Runs a wave of single-book commands, one worker task per book, and writes
+     * their output in input order.
+     *
+     * @param lines   The command lines of the batch.
+     * @param bookIds The book ID touched by each command of the batch.
+     * @param from    The index of the first command of the wave.
+     * @param to      The index after the last command of the wave.
+     * @throws IOException If the output cannot be written.
+     */
+    private void runWave(List<String> lines, Integer[] bookIds, int from, int to) throws IOException {
+        LinkedHashMap<Integer, ArrayList<Integer>> commandsByBook = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            commandsByBook.computeIfAbsent(bookIds[i], bookId -> new ArrayList<>()).add(i);
+        }
+        if (commandsByBook.size() <= 1) {
+            // Nothing to overlap, run in place and keep the main services' caches warm
+            for (int i = from; i < to; i++) {
+                gatorLibrary.libraryActionPerformer(services, actionOf(lines.get(i)), lines.get(i));
+            }
+            return;
+        }
+
+        String[] outputs = new String[to - from];
+        RuntimeException[] failures = new RuntimeException[to - from];
+        ArrayList<Future<?>> pending = new ArrayList<>();
+        for (ArrayList<Integer> commands : commandsByBook.values()) {
+            pending.add(workers.submit(() -> runCommands(lines, commands, from, outputs, failures)));
+        }
+        for (Future<?> task : pending) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] != null) {
+                services.writer.write(outputs[i]);
+            }
+            if (failures[i] != null) {
+                // The sequential run would have stopped at this command
+                throw failures[i];
+            }
+        }
+        // Borrowed and returned books change the ranges cached by the main services
+        for (int bookId : commandsByBook.keySet()) {
+            services.rangeCache.invalidate(bookId);
+        }
+    }
+
+    /**
+     * Runs the commands of one book in input order on the current worker,
+     * buffering the output of each command.
+     */
+    private void runCommands(List<String> lines, List<Integer> commands, int from, String[] outputs,
+            RuntimeException[] failures) {
+        GatorLibServices worker = workerServices.get();
+        for (int i : commands) {
+            StringWriter output = new StringWriter();
+            worker.writer = output;
+            try {
+                gatorLibrary.libraryActionPerformer(worker, actionOf(lines.get(i)), lines.get(i));
+            } catch (RuntimeException e) {
+                failures[i - from] = e;
+                return;
+            } finally {
+                outputs[i - from] = output.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,631 @@
+import java.util.ArrayList;
+
+/**
+ * The `PersistentRedBlackMethod` class is a copy-on-write variant of the
+ * Red-Black Tree used in the Gator Library Book Management System.
+ * Tree nodes are immutable: every mutation copies only the nodes on the path
+ * from the root to the change (O(log n) allocations) and shares every other
+ * subtree with the previous version. The new root is then published with a
+ * single volatile write, so readers pick up a consistent snapshot without
+ * taking any lock while the single writer keeps going.
+ * Books are copied before they are changed (BorrowBook, ReturnBook), so a
+ * `BookNode` reachable from a snapshot is never modified afterwards and long
+ * PrintBooks reports never observe half-applied changes.
+ * Insertion and deletion follow Kahrs' formulation of functional Red-Black
+ * Trees. Its balancing recolours nodes differently from the in-place
+ * `RedBlackMethod`, so ColorFlipCount and the rotation counts of TreeStats
+ * differ from the other catalogs for the same commands. The `head` arguments
+ * of the inherited signatures are ignored.
+ */
+public class PersistentRedBlackMethod extends RedBlackMethod {
+
+    /**
+     * An immutable node of the persistent Red-Black Tree. Its books never change
+     * either, so the available book count of its subtree is fixed when it is
+     * built.
+     */
+    static final class PersistentNode {
+        final BookNode book;
+        final PersistentNode left;
+        final PersistentNode right;
+        final boolean red;
+        final int availableBookCount;
+
+        PersistentNode(boolean red, PersistentNode left, BookNode book, PersistentNode right) {
+            this.red = red;
+            this.left = left;
+            this.book = book;
+            this.right = right;
+            this.availableBookCount = availableBookCount(left) + availableBookCount(right)
+                    + (book.isBookAvailabilityStatus() ? 1 : 0);
+        }
+    }
+
+    // Root of the latest published version, read without locking
+    private volatile PersistentNode root = null;
+    // Count of colour changes made while rebalancing, guarded by the writer lock
+    private int persistentColorFlipCount = 0;
+
+    /**
+     * Gets the root of the latest published version. The returned tree never
+     * changes, so it can be traversed without any locking.
+     *
+     * @return The root of the current snapshot, or null if the tree is empty.
+     */
+    public PersistentNode snapshot() {
+        return root;
+    }
+
+    @Override
+    public RedBlackNode searchWithInRedBlackTree(RedBlackNode head, int bookId) {
+        BookNode book = search(root, bookId);
+        return book == null ? null : new RedBlackNode(book);
+    }
+
+    /**
+     * Searches for several books within one snapshot with a finger search.
+     * Immutable nodes have no parent links, so the finger is the search path
+     * itself, kept on a stack with the (exclusive) upper bound of each subtree;
+     * each search only pops the subtrees that end at or before its book ID.
+     */
+    @Override
+    public BookNode[] searchSortedInRedBlackTree(int[] sortedBookIds) {
+        BookNode[] books = new BookNode[sortedBookIds.length];
+        PersistentNode snapshot = root;
+        if (snapshot == null) {
+            return books;
+        }
+        // A Red-Black Tree of int book IDs is at most 64 levels deep
+        PersistentNode[] path = new PersistentNode[64];
+        long[] upperBounds = new long[64];
+        path[0] = snapshot;
+        upperBounds[0] = Long.MAX_VALUE;
+        int depth = 1;
+        for (int i = 0; i < sortedBookIds.length; i++) {
+            int bookId = sortedBookIds[i];
+            while (depth > 1 && upperBounds[depth - 1] <= bookId) {
+                depth--;
+            }
+            PersistentNode node = path[depth - 1];
+            while (true) {
+                int nodeId = node.book.getBookId();
+                if (nodeId == bookId) {
+                    books[i] = node.book;
+                    break;
+                }
+                PersistentNode child = nodeId > bookId ? node.left : node.right;
+                if (child == null) {
+                    break;
+                }
+                upperBounds[depth] = nodeId > bookId ? nodeId : upperBounds[depth - 1];
+                path[depth++] = child;
+                node = child;
+            }
+        }
+        return books;
+    }
+
+    @Override
+    public synchronized LibraryActionResult checkForBorrowInRedBlackTree(RedBlackNode head, int bookId,
+            int patronID, int priorityNumber) {
+        BookNode current = search(root, bookId);
+        BookNode updated = current == null ? null : new BookNode(current);
+        // Reuse the mutable tree's borrow logic on a detached copy of the book
+        LibraryActionResult result = super.checkForBorrowInRedBlackTree(
+                updated == null ? null : new RedBlackNode(updated), bookId, patronID, priorityNumber);
+        root = replace(root, updated);
+        return result;
+    }
+
+    @Override
+    public synchronized LibraryActionResult returnBookActionInRedBlackTree(RedBlackNode head, int bookId,
+            int patronID) {
+        BookNode current = search(root, bookId);
+        BookNode updated = current == null ? null : new BookNode(current);
+        // Reuse the mutable tree's return logic on a detached copy of the book
+        LibraryActionResult result = super.returnBookActionInRedBlackTree(
+                updated == null ? null : new RedBlackNode(updated), bookId, patronID);
+        root = replace(root, updated);
+        return result;
+    }
+
+    @Override
+    public synchronized void insertInRedBlackTree(RedBlackNode newBookNode, RedBlackNode head) {
+        BookNode book = newBookNode.getBook();
+        if (search(root, book.getBookId()) != null) {
+            return;
+        }
+        root = blacken(insert(root, book));
+    }
+
+    @Override
+    public synchronized LibraryActionResult deleteFromRedBlackTree(int bookID, RedBlackNode head) {
+        BookNode book = search(root, bookID);
+        if (book == null) {
+            return LibraryActionResult.NOT_FOUND;
+        }
+        root = blacken(delete(root, bookID));
+        return LibraryActionResult.deleted(book);
+    }
+
+    /**
+     * Removes the books of a range from the latest version one at a time, in
+     * O(k log n) for k books, and publishes the result as a single new version.
+     * The removed books are returned in a mutable tree.
+     */
+    @Override
+    public synchronized RedBlackMethod extractRangeFromRedBlackTree(int startBookID, int endBookID) {
+        RedBlackMethod extracted = new RedBlackMethod();
+        ArrayList<BookNode> books = new ArrayList<>();
+        if (startBookID <= endBookID) {
+            collectRange(root, startBookID, endBookID, books);
+        }
+        PersistentNode updated = root;
+        for (BookNode book : books) {
+            updated = blacken(delete(updated, book.getBookId()));
+            extracted.insertInRedBlackTree(new RedBlackNode(book), extracted.getHeadRedBlackNode());
+        }
+        root = updated;
+        return extracted;
+    }
+
+    @Override
+    public RedBlackMethod splitRedBlackTree(int bookId) {
+        return extractRangeFromRedBlackTree(bookId, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void joinRedBlackTree(RedBlackMethod upperTree) {
+        PersistentNode updated = root;
+        RedBlackCursor cursor = new RedBlackCursor(upperTree);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            if (search(updated, cursor.getBook().getBookId()) == null) {
+                updated = blacken(insert(updated, cursor.getBook()));
+            }
+        }
+        root = updated;
+        upperTree.headRedBlackNode = null;
+    }
+
+    /**
+     * Merges the other catalog into the latest version one book at a time, in
+     * O(m log n), and publishes the result as a single new version. Books that
+     * gain reservations are copied first so no snapshot changes.
+     */
+    @Override
+    public synchronized void unionRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        PersistentNode updated = root;
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            BookNode current = search(updated, cursor.getBook().getBookId());
+            if (current == null) {
+                updated = blacken(insert(updated, cursor.getBook()));
+            } else {
+                updated = replace(updated,
+                        CatalogSetOperations.resolveConflict(new BookNode(current), cursor.getBook(), policy));
+            }
+        }
+        root = updated;
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books of the latest version that are not in the other catalog
+     * one at a time and publishes the result as a single new version.
+     */
+    @Override
+    public synchronized void intersectRedBlackTree(RedBlackMethod other,
+            CatalogSetOperations.ConflictPolicy policy) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        collectRange(root, Integer.MIN_VALUE, Integer.MAX_VALUE, books);
+        PersistentNode updated = root;
+        for (BookNode book : books) {
+            RedBlackNode match = other.searchWithInRedBlackTree(other.getHeadRedBlackNode(), book.getBookId());
+            if (match == null) {
+                updated = blacken(delete(updated, book.getBookId()));
+            } else {
+                updated = replace(updated,
+                        CatalogSetOperations.resolveConflict(new BookNode(book), match.getBook(), policy));
+            }
+        }
+        root = updated;
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books of the other catalog from the latest version one at a
+     * time and publishes the result as a single new version.
+     */
+    @Override
+    public synchronized void differenceRedBlackTree(RedBlackMethod other) {
+        PersistentNode updated = root;
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            if (search(updated, cursor.getBook().getBookId()) != null) {
+                updated = blacken(delete(updated, cursor.getBook().getBookId()));
+            }
+        }
+        root = updated;
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Collects the books of one snapshot within the given range, in ascending
+     * book ID order, without locking.
+     */
+    @Override
+    public ArrayList<BookNode> serachTheRedBlackTreeInRange(int startBookID, int endBookID, RedBlackNode head,
+            ArrayList<BookNode> books) {
+        collectRange(root, startBookID, endBookID, books);
+        return books;
+    }
+
+    /**
+     * Collects one page of a range from one snapshot, in ascending book ID order,
+     * stopping as soon as the page is full.
+     */
+    @Override
+    public ArrayList<BookNode> searchTheRedBlackTreePage(int startBookID, int endBookID, int afterBookID,
+            int maxBooks) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        int firstBookID = afterBookID >= startBookID ? afterBookID + 1 : startBookID;
+        if (afterBookID != Integer.MAX_VALUE && firstBookID <= endBookID) {
+            collectPage(root, firstBookID, endBookID, maxBooks, books);
+        }
+        return books;
+    }
+
+    /**
+     * Finds the next available book within one snapshot, in O(log n).
+     */
+    @Override
+    public BookNode findNextAvailableBook(int bookID) {
+        return findNextAvailableBook(root, bookID);
+    }
+
+    @Override
+    public synchronized void clearCatalog() {
+        super.clearCatalog();
+        persistentColorFlipCount = 0;
+        root = null;
+    }
+
+    @Override
+    public synchronized int getColorFilpCount() {
+        return persistentColorFlipCount;
+    }
+
+    /**
+     * Takes a snapshot of the tree's telemetry, measuring the shape of the
+     * latest version without locking. Restructurings in the balance steps are
+     * counted as rotations; the fix-up case counters of the mutable tree stay
+     * at zero, since insertion and deletion work differently here.
+     */
+    @Override
+    public RedBlackTreeStats getTreeStats() {
+        RedBlackTreeStats stats;
+        synchronized (this) {
+            stats = treeStats.copyCounters();
+            stats.colorFlipCount = persistentColorFlipCount;
+        }
+        PersistentNode snapshot = root;
+        for (PersistentNode node = snapshot; node != null; node = node.left) {
+            stats.blackHeight += node.red ? 0 : 1;
+        }
+        measureShape(snapshot, 1, stats);
+        return stats;
+    }
+
+    /**
+     * Searches one snapshot for the book with the given ID.
+     *
+     * @param node   The root of the snapshot.
+     * @param bookId The book ID to search for.
+     * @return The book, or null if it is not in the snapshot.
+     */
+    static BookNode search(PersistentNode node, int bookId) {
+        while (node != null) {
+            int nodeId = node.book.getBookId();
+            if (nodeId == bookId) {
+                return node.book;
+            }
+            node = bookId < nodeId ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the nodes of a snapshot to the node count, total depth and height of
+     * the stats.
+     */
+    private static void measureShape(PersistentNode node, int depth, RedBlackTreeStats stats) {
+        if (node == null) {
+            return;
+        }
+        stats.nodeCount++;
+        stats.totalNodeDepth += depth;
+        stats.height = Math.max(stats.height, depth);
+        measureShape(node.left, depth + 1, stats);
+        measureShape(node.right, depth + 1, stats);
+    }
+
+    static int availableBookCount(PersistentNode node) {
+        return node == null ? 0 : node.availableBookCount;
+    }
+
+    /**
+     * Finds the available book of a snapshot with the smallest ID at or after
+     * the given book ID, skipping subtrees in which every book is borrowed.
+     */
+    private static BookNode findNextAvailableBook(PersistentNode node, int bookID) {
+        if (availableBookCount(node) == 0) {
+            return null;
+        }
+        if (node.book.getBookId() < bookID) {
+            return findNextAvailableBook(node.right, bookID);
+        }
+        BookNode book = findNextAvailableBook(node.left, bookID);
+        if (book != null) {
+            return book;
+        }
+        if (node.book.isBookAvailabilityStatus()) {
+            return node.book;
+        }
+        node = node.right;
+        while (availableBookCount(node) > 0) {
+            if (availableBookCount(node.left) > 0) {
+                node = node.left;
+            } else if (node.book.isBookAvailabilityStatus()) {
+                return node.book;
+            } else {
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends the books of a snapshot within the given range to the list, in
+     * ascending order, skipping subtrees that lie outside the range.
+     *
+     * @param node        The root of the snapshot or its subtree.
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @param books       The list the books are appended to.
+     */
+    static void collectRange(PersistentNode node, int startBookID, int endBookID, ArrayList<BookNode> books) {
+        if (node == null) {
+            return;
+        }
+        int nodeId = node.book.getBookId();
+        if (startBookID < nodeId) {
+            collectRange(node.left, startBookID, endBookID, books);
+        }
+        if (startBookID <= nodeId && nodeId <= endBookID) {
+            books.add(node.book);
+        }
+        if (nodeId < endBookID) {
+            collectRange(node.right, startBookID, endBookID, books);
+        }
+    }
+
+    /**
+     * Appends the books of a snapshot within the given range to the list, in
+     * ascending order, until the list holds maxBooks books.
+     *
+     * @param node        The root of the snapshot or its subtree.
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @param maxBooks    The maximum size of the list.
+     * @param books       The list the books are appended to.
+     */
+    static void collectPage(PersistentNode node, int startBookID, int endBookID, int maxBooks,
+            ArrayList<BookNode> books) {
+        if (node == null || books.size() >= maxBooks) {
+            return;
+        }
+        int nodeId = node.book.getBookId();
+        if (startBookID < nodeId) {
+            collectPage(node.left, startBookID, endBookID, maxBooks, books);
+        }
+        if (startBookID <= nodeId && nodeId <= endBookID && books.size() < maxBooks) {
+            books.add(node.book);
+        }
+        if (nodeId < endBookID) {
+            collectPage(node.right, startBookID, endBookID, maxBooks, books);
+        }
+    }
+
+    /**
+     * Returns a new version in which the node holding the book's ID carries the
+     * given book. Only the search path is copied; the shape and colours are
+     * unchanged.
+     *
+     * @param node The root of the current version or its subtree.
+     * @param book The replacement book, or null to leave the tree unchanged.
+     * @return The root of the new version.
+     */
+    private PersistentNode replace(PersistentNode node, BookNode book) {
+        if (node == null || book == null) {
+            return node;
+        }
+        int nodeId = node.book.getBookId();
+        if (book.getBookId() < nodeId) {
+            return new PersistentNode(node.red, replace(node.left, book), node.book, node.right);
+        } else if (book.getBookId() > nodeId) {
+            return new PersistentNode(node.red, node.left, node.book, replace(node.right, book));
+        }
+        return new PersistentNode(node.red, node.left, book, node.right);
+    }
+
+    /**
+     * Inserts a book below the given node, copying the search path.
+     *
+     * @param node The root of the current version or its subtree.
+     * @param book The book to insert.
+     * @return The root of the new subtree, possibly with a red root.
+     */
+    private PersistentNode insert(PersistentNode node, BookNode book) {
+        if (node == null) {
+            return new PersistentNode(true, null, book, null);
+        }
+        boolean goLeft = book.getBookId() < node.book.getBookId();
+        if (node.red) {
+            return goLeft ? new PersistentNode(true, insert(node.left, book), node.book, node.right)
+                    : new PersistentNode(true, node.left, node.book, insert(node.right, book));
+        }
+        return goLeft ? balance(insert(node.left, book), node.book, node.right)
+                : balance(node.left, node.book, insert(node.right, book));
+    }
+
+    /**
+     * Deletes the book with the given ID below the given node. The caller must
+     * ensure the book is present.
+     *
+     * @param node   The root of the current version or its subtree.
+     * @param bookId The ID of the book to delete.
+     * @return The root of the new subtree.
+     */
+    private PersistentNode delete(PersistentNode node, int bookId) {
+        if (node == null) {
+            return null;
+        }
+        int nodeId = node.book.getBookId();
+        if (bookId < nodeId) {
+            return isBlack(node.left) ? balanceLeft(delete(node.left, bookId), node.book, node.right)
+                    : new PersistentNode(true, delete(node.left, bookId), node.book, node.right);
+        } else if (bookId > nodeId) {
+            return isBlack(node.right) ? balanceRight(node.left, node.book, delete(node.right, bookId))
+                    : new PersistentNode(true, node.left, node.book, delete(node.right, bookId));
+        }
+        return fuse(node.left, node.right);
+    }
+
+    /**
+     * Rebuilds a black node whose subtrees may contain a red-red violation.
+     */
+    private PersistentNode balance(PersistentNode left, BookNode book, PersistentNode right) {
+        if (isRed(left) && isRed(right)) {
+            return new PersistentNode(true, recolour(left, false), book, recolour(right, false));
+        }
+        if (isRed(left) && isRed(left.left)) {
+            treeStats.rightRotationCount++;
+            return new PersistentNode(true, recolour(left.left, false), left.book,
+                    new PersistentNode(false, left.right, book, right));
+        }
+        if (isRed(left) && isRed(left.right)) {
+            treeStats.leftRotationCount++;
+            treeStats.rightRotationCount++;
+            return new PersistentNode(true, new PersistentNode(false, left.left, left.book, left.right.left),
+                    left.right.book, new PersistentNode(false, left.right.right, book, right));
+        }
+        if (isRed(right) && isRed(right.right)) {
+            treeStats.leftRotationCount++;
+            return new PersistentNode(true, new PersistentNode(false, left, book, right.left), right.book,
+                    recolour(right.right, false));
+        }
+        if (isRed(right) && isRed(right.left)) {
+            treeStats.rightRotationCount++;
+            treeStats.leftRotationCount++;
+            return new PersistentNode(true, new PersistentNode(false, left, book, right.left.left),
+                    right.left.book, new PersistentNode(false, right.left.right, right.book, right.right));
+        }
+        return new PersistentNode(false, left, book, right);
+    }
+
+    /**
+     * Restores the black height after the left subtree lost one black node.
+     */
+    private PersistentNode balanceLeft(PersistentNode left, BookNode book, PersistentNode right) {
+        if (isRed(left)) {
+            return new PersistentNode(true, recolour(left, false), book, right);
+        }
+        if (isBlack(right)) {
+            return balance(left, book, recolour(right, true));
+        }
+        // right is red with a black left child
+        treeStats.rightRotationCount++;
+        treeStats.leftRotationCount++;
+        return new PersistentNode(true, new PersistentNode(false, left, book, right.left.left), right.left.book,
+                balance(right.left.right, right.book, recolour(right.right, true)));
+    }
+
+    /**
+     * Restores the black height after the right subtree lost one black node.
+     */
+    private PersistentNode balanceRight(PersistentNode left, BookNode book, PersistentNode right) {
+        if (isRed(right)) {
+            return new PersistentNode(true, left, book, recolour(right, false));
+        }
+        if (isBlack(left)) {
+            return balance(recolour(left, true), book, right);
+        }
+        // left is red with a black right child
+        treeStats.leftRotationCount++;
+        treeStats.rightRotationCount++;
+        return new PersistentNode(true, balance(recolour(left.left, true), left.book, left.right.left),
+                left.right.book, new PersistentNode(false, left.right.right, book, right));
+    }
+
+    /**
+     * Joins the two subtrees of a deleted node, whose keys are all ordered.
+     */
+    private PersistentNode fuse(PersistentNode left, PersistentNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (!left.red && right.red) {
+            return new PersistentNode(true, fuse(left, right.left), right.book, right.right);
+        }
+        if (left.red && !right.red) {
+            return new PersistentNode(true, left.left, left.book, fuse(left.right, right));
+        }
+        PersistentNode middle = fuse(left.right, right.left);
+        if (left.red) {
+            if (isRed(middle)) {
+                return new PersistentNode(true, new PersistentNode(true, left.left, left.book, middle.left),
+                        middle.book, new PersistentNode(true, middle.right, right.book, right.right));
+            }
+            return new PersistentNode(true, left.left, left.book,
+                    new PersistentNode(true, middle, right.book, right.right));
+        }
+        if (isRed(middle)) {
+            return new PersistentNode(true, new PersistentNode(false, left.left, left.book, middle.left),
+                    middle.book, new PersistentNode(false, middle.right, right.book, right.right));
+        }
+        return balanceLeft(left.left, left.book, new PersistentNode(false, middle, right.book, right.right));
+    }
+
+    /**
+     * Returns a copy of the node with the given colour, counting the change as a
+     * colour flip.
+     */
+    private PersistentNode recolour(PersistentNode node, boolean red) {
+        if (node.red == red) {
+            return node;
+        }
+        persistentColorFlipCount++;
+        return new PersistentNode(red, node.left, node.book, node.right);
+    }
+
+    /**
+     * Returns the root of a new version, recoloured black.
+     */
+    private PersistentNode blacken(PersistentNode node) {
+        if (node == null || !node.red) {
+            return node;
+        }
+        return new PersistentNode(false, node.left, node.book, node.right);
+    }
+
+    private static boolean isRed(PersistentNode node) {
+        return node != null && node.red;
+    }
+
+    private static boolean isBlack(PersistentNode node) {
+        return node != null && !node.red;
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+/**
+ * The `PopularityTracker` class estimates which books of the Gator Library Book
+ * Management System are requested most, counting every successful borrow and
+ * reservation, in memory that does not grow with the catalog.
+ * Request counts are kept in a count-min sketch of `POPULARITY_SKETCH_DEPTH`
+ * rows of `POPULARITY_SKETCH_WIDTH` counters; a book's estimate is the
+ * smallest of its counters, which never undercounts and overcounts by at most
+ * a small fraction of all requests. The `POPULARITY_TOP_CAPACITY` books with
+ * the highest estimates are kept as heavy-hitter candidates, ranked in a
+ * sorted set so the least popular candidate is evicted in O(log k) when a more
+ * popular book shows up.
+ * With a positive half-life every counter is halved each time the logical
+ * clock passes another half-life, so old requests fade out. Under `--parallel`
+ * requests for different books of a wave may be recorded in any order, which
+ * can only change which of two nearly equally popular books holds the last
+ * candidate place.
+ */
+public class PopularityTracker {
+
+    /**
+     * A heavy-hitter candidate and its estimated request count.
+     */
+    static final class Candidate {
+        final int bookId;
+        long requests;
+
+        Candidate(int bookId, long requests) {
+            this.bookId = bookId;
+            this.requests = requests;
+        }
+    }
+
+    private static final int WIDTH_BITS = Integer
+            .numberOfTrailingZeros(LibraryActionConstant.POPULARITY_SKETCH_WIDTH);
+
+    // counts[row][column] of the count-min sketch
+    private final long[][] counts = new long[LibraryActionConstant.POPULARITY_SKETCH_DEPTH]
+            [LibraryActionConstant.POPULARITY_SKETCH_WIDTH];
+    // Odd multiplier hashing book IDs to the columns of each row
+    private final long[] rowSeeds = new long[LibraryActionConstant.POPULARITY_SKETCH_DEPTH];
+    private final HashMap<Integer, Candidate> candidates = new HashMap<>();
+    // Candidates, most requested first
+    private final TreeSet<Candidate> ranking = new TreeSet<>((c1, c2) -> c1.requests != c2.requests
+            ? Long.compare(c2.requests, c1.requests)
+            : Integer.compare(c1.bookId, c2.bookId));
+    private final long halfLifeTicks;
+    private long lastDecayTick = 0;
+
+    /**
+     * Constructs an empty tracker.
+     *
+     * @param halfLifeTicks The ticks after which request counts are halved, or 0
+     *                      to never decay them.
+     */
+    public PopularityTracker(long halfLifeTicks) {
+        this.halfLifeTicks = halfLifeTicks;
+        SplittableRandom random = new SplittableRandom(LibraryActionConstant.POPULARITY_SKETCH_SEED);
+        for (int row = 0; row < rowSeeds.length; row++) {
+            rowSeeds[row] = random.nextLong() | 1;
+        }
+    }
+
+    /**
+     * Records a request (borrow or reservation) for a book.
+     *
+     * @param bookId The ID of the requested book.
+     * @param now    The current logical time.
+     */
+    public synchronized void recordRequest(int bookId, long now) {
+        decayTo(now);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            int column = column(row, bookId);
+            counts[row][column]++;
+            estimate = Math.min(estimate, counts[row][column]);
+        }
+
+        Candidate candidate = candidates.get(bookId);
+        if (candidate != null) {
+            ranking.remove(candidate);
+            candidate.requests = estimate;
+            ranking.add(candidate);
+            return;
+        }
+        if (candidates.size() == LibraryActionConstant.POPULARITY_TOP_CAPACITY) {
+            Candidate leastPopular = ranking.last();
+            if (leastPopular.requests >= estimate) {
+                return;
+            }
+            ranking.remove(leastPopular);
+            candidates.remove(leastPopular.bookId);
+        }
+        candidate = new Candidate(bookId, estimate);
+        candidates.put(bookId, candidate);
+        ranking.add(candidate);
+    }
+
+    /**
+     * Stops ranking a book, for example because it was deleted. Its requests
+     * stay in the sketch, so it re-enters the ranking with its old count if it
+     * is requested again.
+     *
+     * @param bookId The ID of the book.
+     */
+    public synchronized void forget(int bookId) {
+        Candidate candidate = candidates.remove(bookId);
+        if (candidate != null) {
+            ranking.remove(candidate);
+        }
+    }
+
+    /**
+     * Gets the most requested books.
+     *
+     * @param k   The number of books wanted; at most `POPULARITY_TOP_CAPACITY`
+     *            are tracked.
+     * @param now The current logical time.
+     * @return Up to k candidates, most requested first.
+     */
+    public synchronized ArrayList<Candidate> topBooks(int k, long now) {
+        decayTo(now);
+        ArrayList<Candidate> top = new ArrayList<>();
+        for (Candidate candidate : ranking) {
+            if (top.size() == k) {
+                break;
+            }
+            top.add(new Candidate(candidate.bookId, candidate.requests));
+        }
+        return top;
+    }
+
+    private int column(int row, int bookId) {
+        return (int) ((bookId * rowSeeds[row]) >>> (Long.SIZE - WIDTH_BITS));
+    }
+
+    /**
+     * Halves every count once per half-life elapsed since the last decay.
+     */
+    private void decayTo(long now) {
+        if (halfLifeTicks <= 0 || now - lastDecayTick < halfLifeTicks) {
+            return;
+        }
+        long halvings = (now - lastDecayTick) / halfLifeTicks;
+        lastDecayTick += halvings * halfLifeTicks;
+        int shift = (int) Math.min(halvings, Long.SIZE - 1);
+        for (long[] row : counts) {
+            for (int column = 0; column < row.length; column++) {
+                row[column] >>>= shift;
+            }
+        }
+        // Halving can tie candidates that were ordered by count, so re-rank them
+        ranking.clear();
+        candidates.values().removeIf(candidate -> (candidate.requests >>>= shift) == 0);
+        ranking.addAll(candidates.values());
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The `RangeQueryCache` class caches the rendered output of PrintBooks range
+ * queries in the Gator Library Book Management System, keyed by
+ * (startBookID, endBookID).
+ * Cached ranges are also kept in an interval index (a treap ordered by range
+ * and augmented with the maximum end of each subtree), so when a book changes
+ * only the entries whose range contains that book ID are found and dropped,
+ * in O(log n + k) for k affected entries. Entries are evicted least recently
+ * used first once the entry or character bound is exceeded.
+ */
+public class RangeQueryCache {
+
+    /**
+     * A node of the interval index, one per cached range.
+     */
+    private static final class IntervalNode {
+        final int start;
+        final int end;
+        final int priority;
+        int maxEnd;
+        IntervalNode left;
+        IntervalNode right;
+
+        IntervalNode(int start, int end, int priority) {
+            this.start = start;
+            this.end = end;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    // Rendered results in least-recently-used first order
+    private final LinkedHashMap<Long, char[]> cachedRanges = new LinkedHashMap<>(16, 0.75f, true);
+    private IntervalNode intervalRoot = null;
+    private final Random priorities = new Random(LibraryActionConstant.RANGE_CACHE_SEED);
+    private final int maxEntries;
+    private final long maxCachedChars;
+    private long cachedChars = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long invalidationCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Constructs a range cache bounded by entry count and cached characters.
+     *
+     * @param maxEntries     The maximum number of cached ranges.
+     * @param maxCachedChars The maximum total size of cached output.
+     */
+    public RangeQueryCache(int maxEntries, long maxCachedChars) {
+        this.maxEntries = maxEntries;
+        this.maxCachedChars = maxCachedChars;
+    }
+
+    private static long rangeKey(int startBookID, int endBookID) {
+        return ((long) startBookID << 32) | (endBookID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the cached output of a range query.
+     *
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @return The rendered output, or null on a miss.
+     */
+    public char[] get(int startBookID, int endBookID) {
+        char[] rendered = cachedRanges.get(rangeKey(startBookID, endBookID));
+        if (rendered != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return rendered;
+    }
+
+    /**
+     * Caches the output of a range query, evicting least recently used ranges
+     * until the cache fits its bounds.
+     *
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @param rendered    The rendered output.
+     */
+    public void put(int startBookID, int endBookID, char[] rendered) {
+        if (rendered.length > maxCachedChars) {
+            return;
+        }
+        char[] previous = cachedRanges.put(rangeKey(startBookID, endBookID), rendered);
+        if (previous != null) {
+            cachedChars -= previous.length;
+        } else {
+            intervalRoot = insertInterval(intervalRoot, new IntervalNode(startBookID, endBookID,
+                    priorities.nextInt()));
+        }
+        cachedChars += rendered.length;
+
+        Iterator<Map.Entry<Long, char[]>> eldest = cachedRanges.entrySet().iterator();
+        while ((cachedRanges.size() > maxEntries || cachedChars > maxCachedChars) && eldest.hasNext()) {
+            Map.Entry<Long, char[]> evicted = eldest.next();
+            cachedChars -= evicted.getValue().length;
+            eldest.remove();
+            long key = evicted.getKey();
+            intervalRoot = deleteInterval(intervalRoot, (int) (key >> 32), (int) key);
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Drops every cached range that contains the given book ID.
+     *
+     * @param bookId The ID of the book that changed.
+     */
+    public void invalidate(int bookId) {
+        ArrayList<IntervalNode> stabbed = new ArrayList<>();
+        collectContaining(intervalRoot, bookId, stabbed);
+        for (IntervalNode interval : stabbed) {
+            char[] removed = cachedRanges.remove(rangeKey(interval.start, interval.end));
+            if (removed != null) {
+                cachedChars -= removed.length;
+            }
+            intervalRoot = deleteInterval(intervalRoot, interval.start, interval.end);
+            invalidationCount++;
+        }
+    }
+
+    /**
+     * Drops every cached range.
+     */
+    public void clear() {
+        invalidationCount += cachedRanges.size();
+        cachedRanges.clear();
+        intervalRoot = null;
+        cachedChars = 0;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int getEntryCount() {
+        return cachedRanges.size();
+    }
+
+    /**
+     * Gets the fraction of lookups answered from the cache.
+     *
+     * @return The hit rate, or 0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    private static int compareInterval(int start, int end, IntervalNode node) {
+        if (start != node.start) {
+            return Integer.compare(start, node.start);
+        }
+        return Integer.compare(end, node.end);
+    }
+
+    private static void updateMaxEnd(IntervalNode node) {
+        node.maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd > node.maxEnd) {
+            node.maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd > node.maxEnd) {
+            node.maxEnd = node.right.maxEnd;
+        }
+    }
+
+    private static IntervalNode rotateRight(IntervalNode node) {
+        IntervalNode leftChild = node.left;
+        node.left = leftChild.right;
+        leftChild.right = node;
+        updateMaxEnd(node);
+        updateMaxEnd(leftChild);
+        return leftChild;
+    }
+
+    private static IntervalNode rotateLeft(IntervalNode node) {
+        IntervalNode rightChild = node.right;
+        node.right = rightChild.left;
+        rightChild.left = node;
+        updateMaxEnd(node);
+        updateMaxEnd(rightChild);
+        return rightChild;
+    }
+
+    /**
+     * Inserts an interval into the treap, rotating it up while its priority is
+     * higher than its parent's.
+     */
+    private static IntervalNode insertInterval(IntervalNode node, IntervalNode interval) {
+        if (node == null) {
+            return interval;
+        }
+        if (compareInterval(interval.start, interval.end, node) < 0) {
+            node.left = insertInterval(node.left, interval);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insertInterval(node.right, interval);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        updateMaxEnd(node);
+        return node;
+    }
+
+    /**
+     * Removes an interval from the treap by rotating it down to a leaf.
+     */
+    private static IntervalNode deleteInterval(IntervalNode node, int start, int end) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compareInterval(start, end, node);
+        if (comparison < 0) {
+            node.left = deleteInterval(node.left, start, end);
+        } else if (comparison > 0) {
+            node.right = deleteInterval(node.right, start, end);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            node = rotateRight(node);
+            node.right = deleteInterval(node.right, start, end);
+        } else {
+            node = rotateLeft(node);
+            node.left = deleteInterval(node.left, start, end);
+        }
+        updateMaxEnd(node);
+        return node;
+    }
+
+    /**
+     * Collects the intervals containing the given point, skipping subtrees whose
+     * maximum end lies before it and right subtrees that start after it.
+     */
+    private static void collectContaining(IntervalNode node, int point, ArrayList<IntervalNode> stabbed) {
+        if (node == null || node.maxEnd < point) {
+            return;
+        }
+        collectContaining(node.left, point, stabbed);
+        if (node.start <= point) {
+            if (point <= node.end) {
+                stabbed.add(node);
+            }
+            collectContaining(node.right, point, stabbed);
+        }
+    }
+}
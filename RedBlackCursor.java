@@ -0,0 +1,116 @@
+/**
+ * The `RedBlackCursor` class is an ordered cursor over the Red-Black Tree used
+ * in the Gator Library Book Management System. It is positioned with a seek
+ * (O(log n)) and then moves to the next or previous book in ID order by
+ * following child and parent links, so walking k books costs O(k + log n)
+ * amortised without materialising the range.
+ * A cursor is only valid until the tree is next modified; callers that page
+ * across modifications should remember the last book ID and seek again.
+ */
+public class RedBlackCursor {
+
+    // Tree the cursor walks
+    private final RedBlackMethod tree;
+    // Node the cursor is positioned on, null when exhausted
+    private RedBlackNode current = null;
+
+    /**
+     * Constructs an unpositioned cursor over the given tree.
+     *
+     * @param tree The Red-Black tree to walk.
+     */
+    public RedBlackCursor(RedBlackMethod tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Positions the cursor on the first book whose ID is greater than or equal to
+     * the given book ID.
+     *
+     * @param bookId The book ID to seek to.
+     * @return True if such a book exists.
+     */
+    public boolean seek(int bookId) {
+        RedBlackNode node = tree.getHeadRedBlackNode();
+        current = null;
+        while (node != null) {
+            if (node.getBook().getBookId() >= bookId) {
+                current = node;
+                node = node.getLeftRedBlackNode();
+            } else {
+                node = node.getRightRedBlackNode();
+            }
+        }
+        return current != null;
+    }
+
+    /**
+     * Checks whether the cursor is positioned on a book.
+     *
+     * @return True if the cursor is positioned on a book.
+     */
+    public boolean isValid() {
+        return current != null;
+    }
+
+    /**
+     * Gets the book the cursor is positioned on.
+     *
+     * @return The current book, or null if the cursor is exhausted.
+     */
+    public BookNode getBook() {
+        return current == null ? null : current.getBook();
+    }
+
+    /**
+     * Moves the cursor to the book with the next higher ID.
+     *
+     * @return True if the cursor is still positioned on a book.
+     */
+    public boolean next() {
+        if (current == null) {
+            return false;
+        }
+        if (current.getRightRedBlackNode() != null) {
+            current = current.getRightRedBlackNode();
+            while (current.getLeftRedBlackNode() != null) {
+                current = current.getLeftRedBlackNode();
+            }
+            return true;
+        }
+        // Climb until we arrive from a left subtree
+        RedBlackNode parent = current.getParentRedBlackNode();
+        while (parent != null && current == parent.getRightRedBlackNode()) {
+            current = parent;
+            parent = parent.getParentRedBlackNode();
+        }
+        current = parent;
+        return current != null;
+    }
+
+    /**
+     * Moves the cursor to the book with the next lower ID.
+     *
+     * @return True if the cursor is still positioned on a book.
+     */
+    public boolean prev() {
+        if (current == null) {
+            return false;
+        }
+        if (current.getLeftRedBlackNode() != null) {
+            current = current.getLeftRedBlackNode();
+            while (current.getRightRedBlackNode() != null) {
+                current = current.getRightRedBlackNode();
+            }
+            return true;
+        }
+        // Climb until we arrive from a right subtree
+        RedBlackNode parent = current.getParentRedBlackNode();
+        while (parent != null && current == parent.getLeftRedBlackNode()) {
+            current = parent;
+            parent = parent.getParentRedBlackNode();
+        }
+        current = parent;
+        return current != null;
+    }
+}
@@ -12,11 +12,27 @@ public class RedBlackMethod {
 
     RedBlackNode headRedBlackNode = null;
     int colorFlipCount = 0;
+    // Rotation and fix-up case counters
+    RedBlackTreeStats treeStats = new RedBlackTreeStats();
+    // Nodes of recently looked up books, skipping the descent for hot books
+    HotBookCache hotBooks = new HotBookCache(LibraryActionConstant.HOT_BOOK_CACHE_CAPACITY);
 
     public RedBlackNode getHeadRedBlackNode() {
         return headRedBlackNode;
     }
 
+    /**
+     * Removes every book from the catalog and resets its counters, as a replica
+     * does before loading a snapshot. Catalogs that keep their books outside
+     * the inherited tree override this to empty their own storage too.
+     */
+    public void clearCatalog() {
+        headRedBlackNode = null;
+        hotBooks.clear();
+        colorFlipCount = 0;
+        treeStats = new RedBlackTreeStats();
+    }
+
     /**
      * This method searches for a book with a specified bookId within the Red-Black
      * Tree.
@@ -27,6 +43,10 @@ public class RedBlackMethod {
      *         null if not found.
      */
     public RedBlackNode searchWithInRedBlackTree(RedBlackNode head, int bookId) {
+        if (head != null && head == headRedBlackNode) {
+            // Searches of the whole tree go through the hot book cache
+            return findRedBlackNode(bookId);
+        }
         // Base condition: if the current node is null, or the book with the specified
         // bookId
         // is found
@@ -42,6 +62,76 @@ public class RedBlackMethod {
         return searchWithInRedBlackTree(head.getRightRedBlackNode(), bookId);
     }
 
+    /**
+     * Finds the node of a book, taking it from the hot book cache if it is
+     * there and offering it to the cache otherwise.
+     *
+     * @param bookId The bookId to be searched.
+     * @return The node holding the book, or null if it is not in the tree.
+     */
+    RedBlackNode findRedBlackNode(int bookId) {
+        RedBlackNode node = hotBooks.get(bookId);
+        if (node != null) {
+            return node;
+        }
+        node = headRedBlackNode;
+        while (node != null && node.getBook().getBookId() != bookId) {
+            node = node.getBook().getBookId() > bookId ? node.getLeftRedBlackNode() : node.getRightRedBlackNode();
+        }
+        if (node != null) {
+            hotBooks.admit(bookId, node);
+        }
+        return node;
+    }
+
+    /**
+     * Searches for several books at once with a finger search: each search
+     * resumes from the node the previous one ended on, climbing parent links only
+     * until the subtree there spans the next book ID, instead of starting again
+     * from the root. For k book IDs spread over n books this costs
+     * O(k log(n/k)) instead of O(k log n).
+     *
+     * @param sortedBookIds The book IDs to search for, in ascending order.
+     * @return The books, aligned with the book IDs; null where a book ID is not
+     *         in the tree.
+     */
+    public BookNode[] searchSortedInRedBlackTree(int[] sortedBookIds) {
+        BookNode[] books = new BookNode[sortedBookIds.length];
+        // Node the previous search ended on; its subtree spanned the previous ID
+        RedBlackNode finger = null;
+        for (int i = 0; i < sortedBookIds.length; i++) {
+            int bookId = sortedBookIds[i];
+            RedBlackNode node = finger == null ? headRedBlackNode : climbToSubtreeSpanning(finger, bookId);
+            while (node != null) {
+                finger = node;
+                int nodeId = node.getBook().getBookId();
+                if (nodeId == bookId) {
+                    books[i] = node.getBook();
+                    break;
+                }
+                node = nodeId > bookId ? node.getLeftRedBlackNode() : node.getRightRedBlackNode();
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Climbs from a node whose subtree spans a smaller book ID to the lowest
+     * ancestor whose subtree also spans the given book ID. Only the upper bound
+     * of the subtree needs checking, since the book IDs come in ascending order.
+     */
+    private static RedBlackNode climbToSubtreeSpanning(RedBlackNode node, int bookId) {
+        while (node.getParentRedBlackNode() != null && node.getBook().getBookId() < bookId) {
+            RedBlackNode parent = node.getParentRedBlackNode();
+            if (node == parent.getLeftRedBlackNode() && bookId < parent.getBook().getBookId()) {
+                // The subtree ends just below the parent, which is past the book ID
+                break;
+            }
+            node = parent;
+        }
+        return node;
+    }
+
     /**
      * Checks and performs the borrow operation for a book with the specified bookId
      * within the Red-Black Tree.
@@ -51,30 +141,33 @@ public class RedBlackMethod {
      *                       checked and performed.
      * @param patronID       The ID of the patron attempting to borrow the book.
      * @param priorityNumber The priority number of the patron for book reservation.
-     * @return A status message indicating the result of the borrow operation.
+     * @return The result of the borrow operation.
      *         If the book is available, it is borrowed by the patron.
      *         If the book is already reserved, the patron is added to the
      *         reservation queue.
      */
-    public String checkForBorrowInRedBlackTree(RedBlackNode head, int bookId, int patronID, int priorityNumber) {
+    public LibraryActionResult checkForBorrowInRedBlackTree(RedBlackNode head, int bookId, int patronID,
+            int priorityNumber) {
+        if (head != null && head == headRedBlackNode && head.getBook().getBookId() != bookId) {
+            // Jump straight to the book's node
+            head = findRedBlackNode(bookId);
+        }
         // Base condition: if the current node is null, or the book with the specified
         // bookId
         // is found
         if (head == null || head.getBook().getBookId() == bookId) {
-            String status = "";
+            head.getBook().bumpBookVersion();
 
             if (head.getBook().isBookAvailabilityStatus()) {
                 // Book is available, perform borrow operation
                 head.getBook().setBookAvailabilityStatus(false);
                 head.getBook().setBookBorrowedBy(patronID);
-                status = "Book " + head.getBook().getBookId() + " Borrowed by Patron "
-                        + head.getBook().getBookBorrowedBy();
-            } else {
-                // Book is reserved, add patron to the reservation queue
-                status = "Book " + head.getBook().getBookId() + " Reserved by Patron " + patronID;
-                updateHeap(head, patronID, priorityNumber);
+                refreshAvailableBookCountsToRoot(head);
+                return LibraryActionResult.borrowed(head.getBook().getBookId(), patronID);
             }
-            return status;
+            // Book is reserved, add patron to the reservation queue
+            updateHeap(head, patronID, priorityNumber);
+            return LibraryActionResult.reserved(head.getBook().getBookId(), patronID);
         }
 
         // Recursive : search in the left subtree if the bookId is smaller,
@@ -111,31 +204,33 @@ public class RedBlackMethod {
      * @param head     The root node of the Red-Black Tree or its subtree.
      * @param bookId   The ID of the book to be returned.
      * @param patronID The ID of the patron returning the book.
-     * @return A status message indicating the result of the return action.
+     * @return The result of the return action.
      */
-    public String returnBookActionInRedBlackTree(RedBlackNode head, int bookId, int patronID) {
+    public LibraryActionResult returnBookActionInRedBlackTree(RedBlackNode head, int bookId, int patronID) {
+        if (head != null && head == headRedBlackNode && head.getBook().getBookId() != bookId) {
+            // Jump straight to the book's node
+            head = findRedBlackNode(bookId);
+        }
         // Base condition: if the current node is null, or the book with the specified
         // bookId
         // is found
         if (head == null || head.getBook().getBookId() == bookId) {
-            String status = "";
             BookPriorityQueue priorityQueue = head.getBook().getBookReservationQueue();
             int previousBookHolder = head.getBook().getBookBorrowedBy();
+            head.getBook().bumpBookVersion();
 
             // Check if there are patrons in the reservation queue
             if (priorityQueue.getBookReservationList().size() > 1) {
                 // Update the book borrower to the patron with the highest priority
                 head.getBook().setBookBorrowedBy(priorityQueue.getPatronWithHighestPriority().getPatronId());
-                status = "Book " + head.getBook().getBookId() + " Return by Patron " + previousBookHolder + ";"
-                        + "Book " + head.getBook().getBookId() + " Alloted to Patron "
-                        + head.getBook().getBookBorrowedBy();
-            } else {
-                // No patrons in the reservation queue, mark the book as available
-                head.getBook().setBookAvailabilityStatus(true);
-                head.getBook().setBookBorrowedBy(-1);
-                status = "Book " + head.getBook().getBookId() + " Return by Patron " + previousBookHolder + ";";
+                return LibraryActionResult.allotted(head.getBook().getBookId(), previousBookHolder,
+                        head.getBook().getBookBorrowedBy());
             }
-            return status;
+            // No patrons in the reservation queue, mark the book as available
+            head.getBook().setBookAvailabilityStatus(true);
+            head.getBook().setBookBorrowedBy(-1);
+            refreshAvailableBookCountsToRoot(head);
+            return LibraryActionResult.returned(head.getBook().getBookId(), previousBookHolder);
         }
 
         // Recursive case: search in the left subtree if the bookId is smaller,
@@ -180,6 +275,7 @@ public class RedBlackMethod {
                 parent.setRightRedBlackNode(newBookNode);
             }
             newBookNode.setParentRedBlackNode(parent);
+            refreshAvailableBookCountsToRoot(newBookNode);
 
             restoreRedBlackTreePropertiesAfterInsert(newBookNode);
         } catch (Exception e) {
@@ -202,6 +298,7 @@ public class RedBlackMethod {
 
         // Case 1: Parent is null, we've reached the root, end the recursion
         if (parent == null) {
+            treeStats.insertFixupCaseCounts[1]++;
             redBlackTreeColourFilpTracker(node, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             return;
         }
@@ -216,6 +313,7 @@ public class RedBlackMethod {
 
         // Case 2: If there is no grandparent, set the root to black and end
         if (grandparent == null) {
+            treeStats.insertFixupCaseCounts[2]++;
             redBlackTreeColourFilpTracker(parent, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             return;
         }
@@ -225,6 +323,7 @@ public class RedBlackMethod {
 
         // Case 3: Uncle is red -> recolor parent, grandparent and uncle
         if (uncle != null && uncle.getRedBlackNodeColor() == LibraryActionConstant.RED_BLACK_RED_COLOR_NODE) {
+            treeStats.insertFixupCaseCounts[3]++;
             redBlackTreeColourFilpTracker(parent, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             redBlackTreeColourFilpTracker(grandparent, LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
             redBlackTreeColourFilpTracker(uncle, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
@@ -239,6 +338,7 @@ public class RedBlackMethod {
             // Case 4a: Uncle is black and node is left->right "inner child" of its
             // grandparent
             if (node == parent.getRightRedBlackNode()) {
+                treeStats.insertFixupCaseCounts[4]++;
                 rotateRedBlackTreeToLeft(parent);
 
                 // Let "parent" point to the new root node of the rotated sub-tree.
@@ -247,6 +347,7 @@ public class RedBlackMethod {
 
             // Case 5a: Uncle is black and node is left->left "outer child" of its
             // grandparent
+            treeStats.insertFixupCaseCounts[5]++;
             rotateRedBlackTeeToRight(grandparent);
 
             // Recolor original parent and grandparent
@@ -260,6 +361,7 @@ public class RedBlackMethod {
             // Case 4b: Uncle is black and node is right->left "inner child" of its
             // grandparent
             if (node == parent.getLeftRedBlackNode()) {
+                treeStats.insertFixupCaseCounts[4]++;
                 rotateRedBlackTeeToRight(parent);
 
                 // Let "parent" point to the new root node of the rotated sub-tree.
@@ -268,6 +370,7 @@ public class RedBlackMethod {
 
             // Case 5b: Uncle is black and node is right->right "outer child" of its
             // grandparent
+            treeStats.insertFixupCaseCounts[5]++;
             rotateRedBlackTreeToLeft(grandparent);
 
             // Recolor original parent and grandparent
@@ -287,18 +390,21 @@ public class RedBlackMethod {
      *                                  Tree properties.
      */
     private void rotateRedBlackTeeToRight(RedBlackNode node) {
+        treeStats.rightRotationCount++;
         RedBlackNode parent = node.getParentRedBlackNode();
         RedBlackNode leftChild = node.getLeftRedBlackNode();
 
         node.setLeftRedBlackNode(leftChild.getRightRedBlackNode());
         if (leftChild.getRightRedBlackNode() != null) {
-            leftChild.getRightRedBlackNode().setParentRedBlackNode(null);
+            leftChild.getRightRedBlackNode().setParentRedBlackNode(node);
         }
 
         leftChild.setRightRedBlackNode(node);
         node.setParentRedBlackNode(leftChild);
 
         swapParentRedBlackNodesChild(parent, node, leftChild);
+        refreshAvailableBookCount(node);
+        refreshAvailableBookCount(leftChild);
     }
 
     /**
@@ -312,6 +418,7 @@ public class RedBlackMethod {
      *                                  Tree properties.
      */
     private void rotateRedBlackTreeToLeft(RedBlackNode node) {
+        treeStats.leftRotationCount++;
         RedBlackNode parent = node.getParentRedBlackNode();
         RedBlackNode rightChild = node.getRightRedBlackNode();
 
@@ -324,6 +431,8 @@ public class RedBlackMethod {
         node.setParentRedBlackNode(rightChild);
 
         swapParentRedBlackNodesChild(parent, node, rightChild);
+        refreshAvailableBookCount(node);
+        refreshAvailableBookCount(rightChild);
     }
 
     /**
@@ -380,10 +489,10 @@ public class RedBlackMethod {
      *
      * @param bookID The book ID of the node to be deleted.
      * @param head   The head node of the Red-Black Tree.
-     * @return A status message indicating the result of the deletion.
+     * @return The result of the deletion.
      */
-    public String deleteFromRedBlackTree(int bookID, RedBlackNode head) {
-        RedBlackNode node = head;
+    public LibraryActionResult deleteFromRedBlackTree(int bookID, RedBlackNode head) {
+        RedBlackNode node = head != null && head == headRedBlackNode ? findRedBlackNode(bookID) : head;
 
         // Find the node to be deleted
         while (node != null && node.getBook().getBookId() != bookID) {
@@ -397,38 +506,35 @@ public class RedBlackMethod {
 
         // Node not found?
         if (node == null) {
-            return "";
+            return LibraryActionResult.NOT_FOUND;
         }
 
         // At this point, "node" is the node to be deleted
 
-        String returnStatusMessage = "Book " + node.getBook().getBookId() + " is no longer available.";
-        String returnSecondHalfString = "";
-        if (!node.getBook().getBookReservationQueue().waitListHeap.isEmpty()) {
-            String waitingPatronID = "";
-            for (int i = 0; i < node.getBook().getBookReservationQueue().waitListHeap.size(); i++) {
-                if (i != node.getBook().getBookReservationQueue().waitListHeap.size() - 1) {
-                    waitingPatronID = waitingPatronID + " "
-                            + node.getBook().getBookReservationQueue().waitListHeap.get(i).getPatronId() + ",";
-                } else {
-                    waitingPatronID = waitingPatronID + " "
-                            + node.getBook().getBookReservationQueue().waitListHeap.get(i).getPatronId() + " ";
-                }
-            }
-            returnSecondHalfString = returnSecondHalfString
-                    + (node.getBook().getBookReservationQueue().waitListHeap.size() > 1 ? "Reservations made by Patrons"
-                            : "Reservation made by Patron")
-                    + waitingPatronID
-                    + " have been cancelled!";
-        }
+        LibraryActionResult deletionResult = LibraryActionResult.deleted(node.getBook());
+        node.getBook().bumpBookVersion();
+        removeRedBlackNode(node);
+        return deletionResult;
+    }
 
+    /**
+     * Unlinks a node from the Red-Black Tree and restores the tree's properties.
+     * If the node has two children its in-order successor's book is moved into it
+     * and the successor's node is unlinked instead.
+     *
+     * @param node The node holding the book to be removed.
+     */
+    private void removeRedBlackNode(RedBlackNode node) {
         RedBlackNode movedUpNode;
         String deletedNodeColor;
+        RedBlackNode unlinkedNode;
+        hotBooks.invalidate(node.getBook().getBookId());
 
         // Node has zero or one child
         if (node.getLeftRedBlackNode() == null || node.getRightRedBlackNode() == null) {
             movedUpNode = deleteRedBlackNodeWithZeroOrOneChild(node);
             deletedNodeColor = node.getRedBlackNodeColor();
+            unlinkedNode = node;
         }
 
         // Node has two children
@@ -436,13 +542,19 @@ public class RedBlackMethod {
             // Find minimum node of right subtree ("inorder successor" of current node)
             RedBlackNode inOrderSuccessor = findMinimum(node.getRightRedBlackNode());
 
-            // Copy inorder successor's data to current node (keep its color!)
+            // Copy inorder successor's data to current node (keep its color!); the
+            // successor's book now lives in another node
             node.setBook(inOrderSuccessor.getBook());
+            hotBooks.invalidate(inOrderSuccessor.getBook().getBookId());
 
             // Delete inorder successor just as we would delete a node with 0 or 1 child
             movedUpNode = deleteRedBlackNodeWithZeroOrOneChild(inOrderSuccessor);
             deletedNodeColor = inOrderSuccessor.getRedBlackNodeColor();
+            unlinkedNode = inOrderSuccessor;
         }
+        // The path above the unlinked node lost a book (and passes the node that
+        // took over the successor's book); fix its counts before rotating
+        refreshAvailableBookCountsToRoot(unlinkedNode.getParentRedBlackNode());
 
         if (deletedNodeColor == LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE) {
             restoreRedBlackTreePropertiesAfterDelete(movedUpNode);
@@ -452,7 +564,6 @@ public class RedBlackMethod {
                 swapParentRedBlackNodesChild(movedUpNode.getParentRedBlackNode(), movedUpNode, null);
             }
         }
-        return returnStatusMessage + returnSecondHalfString;
     }
 
     /**
@@ -516,6 +627,7 @@ public class RedBlackMethod {
     private void restoreRedBlackTreePropertiesAfterDelete(RedBlackNode node) {
         // Case 1: Examined node is root, end of recursion
         if (node == headRedBlackNode) {
+            treeStats.deleteFixupCaseCounts[1]++;
             node.setRedBlackNodeColor(LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             return;
         }
@@ -524,6 +636,7 @@ public class RedBlackMethod {
 
         // Case 2: Red sibling
         if (sibling.getRedBlackNodeColor() == LibraryActionConstant.RED_BLACK_RED_COLOR_NODE) {
+            treeStats.deleteFixupCaseCounts[2]++;
             processRedSibling(node, sibling);
             sibling = getRedBlackNodeSibling(node); // Get new sibling for fall-through to cases 3-6
         }
@@ -536,12 +649,14 @@ public class RedBlackMethod {
             // Case 3: Black sibling with two black children + red parent
 
             if (node.getParentRedBlackNode().getRedBlackNodeColor() == LibraryActionConstant.RED_BLACK_RED_COLOR_NODE) {
+                treeStats.deleteFixupCaseCounts[3]++;
                 redBlackTreeColourFilpTracker(node.getParentRedBlackNode(),
                         LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             }
 
             // Case 4: Black sibling with two black children + black parent
             else {
+                treeStats.deleteFixupCaseCounts[4]++;
                 restoreRedBlackTreePropertiesAfterDelete(node.getParentRedBlackNode());
             }
         }
@@ -587,12 +702,14 @@ public class RedBlackMethod {
         // Case 5: Black sibling with at least one red child + "outer nephew" is black
         // --> Recolor sibling and its child, and rotate around sibling
         if (nodeIsLeftChild && isColorOfRedBlackNodeBlack(sibling.getRightRedBlackNode())) {
+            treeStats.deleteFixupCaseCounts[5]++;
             redBlackTreeColourFilpTracker(sibling.getLeftRedBlackNode(),
                     LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             redBlackTreeColourFilpTracker(sibling, LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
             rotateRedBlackTeeToRight(sibling);
             sibling = node.getParentRedBlackNode().getRightRedBlackNode();
         } else if (!nodeIsLeftChild && isColorOfRedBlackNodeBlack(sibling.getLeftRedBlackNode())) {
+            treeStats.deleteFixupCaseCounts[5]++;
             redBlackTreeColourFilpTracker(sibling.getRightRedBlackNode(),
                     LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             redBlackTreeColourFilpTracker(sibling, LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
@@ -604,14 +721,15 @@ public class RedBlackMethod {
 
         // Case 6: Black sibling with at least one red child + "outer nephew" is red
         // --> Recolor sibling + parent + sibling's child, and rotate around parent
+        treeStats.deleteFixupCaseCounts[6]++;
         redBlackTreeColourFilpTracker(sibling, node.getParentRedBlackNode().getRedBlackNodeColor());
         redBlackTreeColourFilpTracker(node.getParentRedBlackNode(), LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
         if (nodeIsLeftChild) {
-            redBlackTreeColourFilpTracker(sibling,
+            redBlackTreeColourFilpTracker(sibling.getRightRedBlackNode(),
                     LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             rotateRedBlackTreeToLeft(node.getParentRedBlackNode());
         } else {
-            redBlackTreeColourFilpTracker(sibling,
+            redBlackTreeColourFilpTracker(sibling.getLeftRedBlackNode(),
                     LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
             rotateRedBlackTeeToRight(node.getParentRedBlackNode());
         }
@@ -647,6 +765,462 @@ public class RedBlackMethod {
         return (node == null || node.getRedBlackNodeColor() == LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
     }
 
+    /**
+     * Removes every book with an ID greater than or equal to the given book ID
+     * and returns them as a new Red-Black Tree, in O(log n). The tree is cut
+     * along the search path of the book ID and the pieces on each side are
+     * joined back together.
+     *
+     * @param bookId The smallest book ID moved to the returned tree.
+     * @return A tree holding the books with ID >= bookId.
+     */
+    public RedBlackMethod splitRedBlackTree(int bookId) {
+        RedBlackMethod upperTree = new RedBlackMethod();
+        // Cached nodes may move to the upper tree
+        hotBooks.clear();
+        RedBlackNode root = headRedBlackNode;
+        int rootBlackHeight = getBlackHeight(root);
+        headRedBlackNode = null;
+
+        SplitTree split = splitSubtree(root, rootBlackHeight, bookId);
+        JoinedTree upper = split.upper;
+        if (split.match != null) {
+            upper = joinSubtrees(null, 0, split.match, upper.root, upper.blackHeight);
+        }
+        headRedBlackNode = asRoot(split.lower.root);
+        upperTree.headRedBlackNode = asRoot(upper.root);
+        return upperTree;
+    }
+
+    /**
+     * Appends every book of the given tree to this tree, in O(log n). All book
+     * IDs of the given tree must be greater than those of this tree; the given
+     * tree is left empty.
+     *
+     * @param upperTree The tree whose books are appended.
+     * @throws IllegalArgumentException If the book ID ranges overlap.
+     */
+    public void joinRedBlackTree(RedBlackMethod upperTree) {
+        if (upperTree.headRedBlackNode == null) {
+            return;
+        }
+        // The nodes of the upper tree move into this one
+        upperTree.hotBooks.clear();
+        if (headRedBlackNode == null) {
+            headRedBlackNode = upperTree.headRedBlackNode;
+            upperTree.headRedBlackNode = null;
+            return;
+        }
+        RedBlackNode lowerMaximum = headRedBlackNode;
+        while (lowerMaximum.getRightRedBlackNode() != null) {
+            lowerMaximum = lowerMaximum.getRightRedBlackNode();
+        }
+        if (lowerMaximum.getBook().getBookId() >= findMinimum(upperTree.headRedBlackNode).getBook().getBookId()) {
+            throw new IllegalArgumentException("Joined trees must hold disjoint, ordered book ID ranges");
+        }
+
+        RedBlackNode upperRoot = upperTree.headRedBlackNode;
+        upperTree.headRedBlackNode = null;
+        RedBlackNode lowerRoot = headRedBlackNode;
+        JoinedTree joined = joinSubtrees(new JoinedTree(lowerRoot, getBlackHeight(lowerRoot)),
+                new JoinedTree(upperRoot, getBlackHeight(upperRoot)));
+        headRedBlackNode = asRoot(joined.root);
+    }
+
+    /**
+     * Removes every book with an ID within the given range and returns them as a
+     * new Red-Black Tree, using two splits and one join.
+     *
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @return A tree holding the removed books.
+     */
+    public RedBlackMethod extractRangeFromRedBlackTree(int startBookID, int endBookID) {
+        if (startBookID > endBookID) {
+            return new RedBlackMethod();
+        }
+        RedBlackMethod extracted = splitRedBlackTree(startBookID);
+        if (endBookID != Integer.MAX_VALUE) {
+            joinRedBlackTree(extracted.splitRedBlackTree(endBookID + 1));
+        }
+        return extracted;
+    }
+
+    /**
+     * Adds every book of the given catalog to this tree using a parallel
+     * join-based union. The given catalog is left empty.
+     *
+     * @param other  The catalog to merge in.
+     * @param policy How book IDs present in both catalogs are resolved.
+     */
+    public void unionRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        // A common book may end up in the other catalog's node
+        hotBooks.clear();
+        other.hotBooks.clear();
+        CatalogSetOperations.union(this, other, policy);
+    }
+
+    /**
+     * Keeps only the books whose IDs are also in the given catalog, using a
+     * parallel join-based intersection. The given catalog is left empty.
+     *
+     * @param other  The catalog to intersect with.
+     * @param policy Which copy of each common book is kept.
+     */
+    public void intersectRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        hotBooks.clear();
+        other.hotBooks.clear();
+        CatalogSetOperations.intersection(this, other, policy);
+    }
+
+    /**
+     * Removes every book whose ID is in the given catalog, using a parallel
+     * join-based difference. The given catalog is left empty.
+     *
+     * @param other The catalog of books to remove.
+     */
+    public void differenceRedBlackTree(RedBlackMethod other) {
+        hotBooks.clear();
+        other.hotBooks.clear();
+        CatalogSetOperations.difference(this, other);
+    }
+
+    /**
+     * A subtree produced by a split or join, with its black height (the number of
+     * black nodes on every path from its root down to a leaf).
+     */
+    static final class JoinedTree {
+        static final JoinedTree EMPTY = new JoinedTree(null, 0);
+
+        final RedBlackNode root;
+        final int blackHeight;
+
+        JoinedTree(RedBlackNode root, int blackHeight) {
+            this.root = root;
+            this.blackHeight = blackHeight;
+        }
+    }
+
+    /**
+     * The result of splitting a subtree around a book ID: the books below it, the
+     * detached node holding it (null if absent) and the books above it.
+     */
+    static final class SplitTree {
+        final JoinedTree lower;
+        final RedBlackNode match;
+        final JoinedTree upper;
+
+        SplitTree(JoinedTree lower, RedBlackNode match, JoinedTree upper) {
+            this.lower = lower;
+            this.match = match;
+            this.upper = upper;
+        }
+    }
+
+    /**
+     * Splits a detached subtree around the given book ID, re-joining the pieces
+     * cut off along the search path.
+     *
+     * @param node        The root of the subtree.
+     * @param blackHeight The black height of the subtree.
+     * @param bookId      The book ID to split around.
+     * @return The books below the book ID, the node holding it and the books
+     *         above it.
+     */
+    SplitTree splitSubtree(RedBlackNode node, int blackHeight, int bookId) {
+        if (node == null) {
+            return new SplitTree(JoinedTree.EMPTY, null, JoinedTree.EMPTY);
+        }
+        int childBlackHeight = blackHeight - (isColorOfRedBlackNodeBlack(node) ? 1 : 0);
+        RedBlackNode left = detach(node.getLeftRedBlackNode());
+        RedBlackNode right = detach(node.getRightRedBlackNode());
+        node.setLeftRedBlackNode(null);
+        node.setRightRedBlackNode(null);
+
+        int nodeBookId = node.getBook().getBookId();
+        if (bookId == nodeBookId) {
+            return new SplitTree(new JoinedTree(left, childBlackHeight), node,
+                    new JoinedTree(right, childBlackHeight));
+        }
+        if (bookId < nodeBookId) {
+            SplitTree split = splitSubtree(left, childBlackHeight, bookId);
+            return new SplitTree(split.lower, split.match,
+                    joinSubtrees(split.upper.root, split.upper.blackHeight, node, right, childBlackHeight));
+        }
+        SplitTree split = splitSubtree(right, childBlackHeight, bookId);
+        return new SplitTree(joinSubtrees(left, childBlackHeight, node, split.lower.root, split.lower.blackHeight),
+                split.match, split.upper);
+    }
+
+    /**
+     * Joins two detached subtrees without a middle node: the minimum of the upper
+     * subtree is removed and used as the middle node. All book IDs of the lower
+     * subtree must be smaller than those of the upper subtree.
+     *
+     * @param lower The subtree with the smaller book IDs.
+     * @param upper The subtree with the larger book IDs.
+     * @return The joined subtree.
+     */
+    JoinedTree joinSubtrees(JoinedTree lower, JoinedTree upper) {
+        if (lower.root == null) {
+            return upper;
+        }
+        if (upper.root == null) {
+            return lower;
+        }
+        RedBlackMethod upperTree = new RedBlackMethod();
+        upperTree.headRedBlackNode = upper.root;
+        RedBlackNode middle = findMinimum(upper.root);
+        upperTree.removeRedBlackNode(middle);
+        colorFlipCount += upperTree.colorFlipCount;
+        treeStats.addCounters(upperTree.treeStats);
+        middle.setLeftRedBlackNode(null);
+        middle.setRightRedBlackNode(null);
+        middle.setParentRedBlackNode(null);
+
+        RedBlackNode upperRoot = upperTree.headRedBlackNode;
+        return joinSubtrees(lower.root, lower.blackHeight, middle, upperRoot, getBlackHeight(upperRoot));
+    }
+
+    /**
+     * Joins two detached subtrees and a middle node whose book ID lies between
+     * them, descending the taller subtree's spine to the height of the shorter
+     * one. Runs in O(difference of black heights + 1).
+     *
+     * @param left             The subtree with the smaller book IDs.
+     * @param leftBlackHeight  The black height of the left subtree.
+     * @param middle           The detached node joining the two subtrees.
+     * @param right            The subtree with the larger book IDs.
+     * @param rightBlackHeight The black height of the right subtree.
+     * @return The joined subtree.
+     */
+    JoinedTree joinSubtrees(RedBlackNode left, int leftBlackHeight, RedBlackNode middle,
+            RedBlackNode right, int rightBlackHeight) {
+        // Black roots keep the spine descent simple
+        if (!isColorOfRedBlackNodeBlack(left)) {
+            recolourRedBlackNode(left, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            leftBlackHeight++;
+        }
+        if (!isColorOfRedBlackNodeBlack(right)) {
+            recolourRedBlackNode(right, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            rightBlackHeight++;
+        }
+
+        if (leftBlackHeight == rightBlackHeight) {
+            linkRedBlackNodeChildren(middle, left, right);
+            middle.setRedBlackNodeColor(LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
+            return new JoinedTree(middle, leftBlackHeight);
+        }
+
+        RedBlackNode joined;
+        int unchangedSideBlackHeight;
+        if (leftBlackHeight > rightBlackHeight) {
+            joined = joinIntoRightSpine(left, leftBlackHeight, middle, right, rightBlackHeight);
+            // Either the left root kept its left child, or it became the left child of a rotated root
+            unchangedSideBlackHeight = joined == left ? leftBlackHeight - 1 : leftBlackHeight;
+            if (!isColorOfRedBlackNodeBlack(joined) && !isColorOfRedBlackNodeBlack(joined.getRightRedBlackNode())) {
+                recolourRedBlackNode(joined, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            }
+        } else {
+            joined = joinIntoLeftSpine(left, leftBlackHeight, middle, right, rightBlackHeight);
+            unchangedSideBlackHeight = joined == right ? rightBlackHeight - 1 : rightBlackHeight;
+            if (!isColorOfRedBlackNodeBlack(joined) && !isColorOfRedBlackNodeBlack(joined.getLeftRedBlackNode())) {
+                recolourRedBlackNode(joined, LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            }
+        }
+        joined.setParentRedBlackNode(null);
+        return new JoinedTree(joined,
+                unchangedSideBlackHeight + (isColorOfRedBlackNodeBlack(joined) ? 1 : 0));
+    }
+
+    /**
+     * Hangs the middle node and the shorter right subtree off the right spine of
+     * the taller left subtree, fixing red-red violations on the way back up.
+     */
+    private RedBlackNode joinIntoRightSpine(RedBlackNode left, int leftBlackHeight, RedBlackNode middle,
+            RedBlackNode right, int rightBlackHeight) {
+        if (leftBlackHeight == rightBlackHeight && isColorOfRedBlackNodeBlack(left)) {
+            linkRedBlackNodeChildren(middle, left, right);
+            middle.setRedBlackNodeColor(LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
+            return middle;
+        }
+        int childBlackHeight = leftBlackHeight - (isColorOfRedBlackNodeBlack(left) ? 1 : 0);
+        RedBlackNode newRight = joinIntoRightSpine(left.getRightRedBlackNode(), childBlackHeight, middle, right,
+                rightBlackHeight);
+        left.setRightRedBlackNode(newRight);
+        newRight.setParentRedBlackNode(left);
+        refreshAvailableBookCount(left);
+        if (isColorOfRedBlackNodeBlack(left) && !isColorOfRedBlackNodeBlack(newRight)
+                && !isColorOfRedBlackNodeBlack(newRight.getRightRedBlackNode())) {
+            recolourRedBlackNode(newRight.getRightRedBlackNode(), LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            return rotateDetachedSubtreeToLeft(left);
+        }
+        return left;
+    }
+
+    /**
+     * Hangs the middle node and the shorter left subtree off the left spine of
+     * the taller right subtree, fixing red-red violations on the way back up.
+     */
+    private RedBlackNode joinIntoLeftSpine(RedBlackNode left, int leftBlackHeight, RedBlackNode middle,
+            RedBlackNode right, int rightBlackHeight) {
+        if (leftBlackHeight == rightBlackHeight && isColorOfRedBlackNodeBlack(right)) {
+            linkRedBlackNodeChildren(middle, left, right);
+            middle.setRedBlackNodeColor(LibraryActionConstant.RED_BLACK_RED_COLOR_NODE);
+            return middle;
+        }
+        int childBlackHeight = rightBlackHeight - (isColorOfRedBlackNodeBlack(right) ? 1 : 0);
+        RedBlackNode newLeft = joinIntoLeftSpine(left, leftBlackHeight, middle, right.getLeftRedBlackNode(),
+                childBlackHeight);
+        right.setLeftRedBlackNode(newLeft);
+        newLeft.setParentRedBlackNode(right);
+        refreshAvailableBookCount(right);
+        if (isColorOfRedBlackNodeBlack(right) && !isColorOfRedBlackNodeBlack(newLeft)
+                && !isColorOfRedBlackNodeBlack(newLeft.getLeftRedBlackNode())) {
+            recolourRedBlackNode(newLeft.getLeftRedBlackNode(), LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+            return rotateDetachedSubtreeToRight(right);
+        }
+        return right;
+    }
+
+    /**
+     * Left rotation of a subtree that is not (yet) attached to the tree; the new
+     * subtree root takes over the old root's parent link.
+     *
+     * @param node The root of the subtree.
+     * @return The new root of the subtree.
+     */
+    private RedBlackNode rotateDetachedSubtreeToLeft(RedBlackNode node) {
+        treeStats.leftRotationCount++;
+        RedBlackNode rightChild = node.getRightRedBlackNode();
+        node.setRightRedBlackNode(rightChild.getLeftRedBlackNode());
+        if (rightChild.getLeftRedBlackNode() != null) {
+            rightChild.getLeftRedBlackNode().setParentRedBlackNode(node);
+        }
+        rightChild.setParentRedBlackNode(node.getParentRedBlackNode());
+        rightChild.setLeftRedBlackNode(node);
+        node.setParentRedBlackNode(rightChild);
+        refreshAvailableBookCount(node);
+        refreshAvailableBookCount(rightChild);
+        return rightChild;
+    }
+
+    /**
+     * Right rotation of a subtree that is not (yet) attached to the tree; the new
+     * subtree root takes over the old root's parent link.
+     *
+     * @param node The root of the subtree.
+     * @return The new root of the subtree.
+     */
+    private RedBlackNode rotateDetachedSubtreeToRight(RedBlackNode node) {
+        treeStats.rightRotationCount++;
+        RedBlackNode leftChild = node.getLeftRedBlackNode();
+        node.setLeftRedBlackNode(leftChild.getRightRedBlackNode());
+        if (leftChild.getRightRedBlackNode() != null) {
+            leftChild.getRightRedBlackNode().setParentRedBlackNode(node);
+        }
+        leftChild.setParentRedBlackNode(node.getParentRedBlackNode());
+        leftChild.setRightRedBlackNode(node);
+        node.setParentRedBlackNode(leftChild);
+        refreshAvailableBookCount(node);
+        refreshAvailableBookCount(leftChild);
+        return leftChild;
+    }
+
+    private static void linkRedBlackNodeChildren(RedBlackNode parent, RedBlackNode left, RedBlackNode right) {
+        parent.setLeftRedBlackNode(left);
+        parent.setRightRedBlackNode(right);
+        if (left != null) {
+            left.setParentRedBlackNode(parent);
+        }
+        if (right != null) {
+            right.setParentRedBlackNode(parent);
+        }
+        refreshAvailableBookCount(parent);
+    }
+
+    /**
+     * Gets the number of available books in a subtree.
+     *
+     * @param node The root of the subtree, or null.
+     * @return The number of available books in the subtree.
+     */
+    static int getAvailableBookCount(RedBlackNode node) {
+        return node == null ? 0 : node.getAvailableBookCount();
+    }
+
+    /**
+     * Recomputes a node's available book count from its children, whose counts
+     * must be up to date.
+     */
+    static void refreshAvailableBookCount(RedBlackNode node) {
+        node.setAvailableBookCount(getAvailableBookCount(node.getLeftRedBlackNode())
+                + getAvailableBookCount(node.getRightRedBlackNode())
+                + (node.getBook().isBookAvailabilityStatus() ? 1 : 0));
+    }
+
+    /**
+     * Recomputes the available book counts from a node up to the root, after the
+     * node's book or subtree changed. Synchronized because a parallel replay
+     * borrows and returns different books of one tree concurrently, and their
+     * paths to the root meet.
+     *
+     * @param node The lowest changed node, or null.
+     */
+    synchronized void refreshAvailableBookCountsToRoot(RedBlackNode node) {
+        while (node != null) {
+            refreshAvailableBookCount(node);
+            node = node.getParentRedBlackNode();
+        }
+    }
+
+    static RedBlackNode detach(RedBlackNode node) {
+        if (node != null) {
+            node.setParentRedBlackNode(null);
+        }
+        return node;
+    }
+
+    /**
+     * Makes a joined subtree the root of a tree, which is always black.
+     */
+    static RedBlackNode asRoot(RedBlackNode node) {
+        if (node != null) {
+            node.setParentRedBlackNode(null);
+            node.setRedBlackNodeColor(LibraryActionConstant.RED_BLACK_BLACK_COLOR_NODE);
+        }
+        return node;
+    }
+
+    /**
+     * Recolours a node during split or join, counting the change as a colour
+     * flip.
+     */
+    private void recolourRedBlackNode(RedBlackNode node, String newRedBlackNodeColor) {
+        if (node.getRedBlackNodeColor() != newRedBlackNodeColor) {
+            colorFlipCount++;
+        }
+        node.setRedBlackNodeColor(newRedBlackNodeColor);
+    }
+
+    /**
+     * Counts the black nodes on the leftmost path of a subtree, which is its
+     * black height in a valid Red-Black Tree.
+     *
+     * @param node The root of the subtree.
+     * @return The black height of the subtree.
+     */
+    int getBlackHeight(RedBlackNode node) {
+        int blackHeight = 0;
+        while (node != null) {
+            if (isColorOfRedBlackNodeBlack(node)) {
+                blackHeight++;
+            }
+            node = node.getLeftRedBlackNode();
+        }
+        return blackHeight;
+    }
+
     /**
      * Searches the Red-Black Tree for nodes within the specified range of book IDs
      * and collects them into an ArrayList.
@@ -677,6 +1251,74 @@ public class RedBlackMethod {
         return books;
     }
 
+    /**
+     * Collects one page of the books within the specified range, in ascending
+     * book ID order, starting after the given book ID. A cursor seeks to the
+     * first book of the page in O(log n) and walks forward, so memory is bounded
+     * by the page size rather than the range.
+     *
+     * @param startBookID The starting book ID of the range.
+     * @param endBookID   The ending book ID of the range.
+     * @param afterBookID Only books with a greater ID are returned (the
+     *                    continuation token of the previous page).
+     * @param maxBooks    The maximum number of books to collect.
+     * @return An ArrayList of at most maxBooks BookNode objects.
+     */
+    public ArrayList<BookNode> searchTheRedBlackTreePage(int startBookID, int endBookID, int afterBookID,
+            int maxBooks) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        int firstBookID = afterBookID >= startBookID ? afterBookID + 1 : startBookID;
+        if (afterBookID == Integer.MAX_VALUE || firstBookID > endBookID) {
+            return books;
+        }
+        RedBlackCursor cursor = new RedBlackCursor(this);
+        cursor.seek(firstBookID);
+        while (cursor.isValid() && books.size() < maxBooks && cursor.getBook().getBookId() <= endBookID) {
+            books.add(cursor.getBook());
+            cursor.next();
+        }
+        return books;
+    }
+
+    /**
+     * Finds the available book with the smallest ID at or after the specified
+     * book ID in O(log n), skipping subtrees in which every book is borrowed.
+     *
+     * @param bookID The book ID to start from.
+     * @return The next available book, or null if there is none.
+     */
+    public BookNode findNextAvailableBook(int bookID) {
+        return findNextAvailableBook(headRedBlackNode, bookID);
+    }
+
+    private static BookNode findNextAvailableBook(RedBlackNode node, int bookID) {
+        if (getAvailableBookCount(node) == 0) {
+            return null;
+        }
+        if (node.getBook().getBookId() < bookID) {
+            return findNextAvailableBook(node.getRightRedBlackNode(), bookID);
+        }
+        BookNode book = findNextAvailableBook(node.getLeftRedBlackNode(), bookID);
+        if (book != null) {
+            return book;
+        }
+        if (node.getBook().isBookAvailabilityStatus()) {
+            return node.getBook();
+        }
+        // Every book of the right subtree lies after the book ID
+        node = node.getRightRedBlackNode();
+        while (getAvailableBookCount(node) > 0) {
+            if (getAvailableBookCount(node.getLeftRedBlackNode()) > 0) {
+                node = node.getLeftRedBlackNode();
+            } else if (node.getBook().isBookAvailabilityStatus()) {
+                return node.getBook();
+            } else {
+                node = node.getRightRedBlackNode();
+            }
+        }
+        return null;
+    }
+
     /**
      * Updates the color of a Red-Black Tree node and increments a counter if the
      * color is changed.
@@ -701,48 +1343,41 @@ public class RedBlackMethod {
     }
 
     /**
-     * Finds the book with the closest book ID to the specified book ID in a
-     * Red-Black Tree,
-     * considering the absolute difference between book IDs. The method searches the
-     * tree
-     * recursively, updating the closest book information and the minimum difference
-     * as it traverses
-     * the tree nodes.
+     * Checks whether the catalog is a Red-Black Tree, whose colour flips,
+     * rotations and fix-up cases ColorFlipCount and TreeStats report.
      *
-     * @param head            The head node of the Red-Black Tree.
-     * @param bookID          The target book ID for which to find the closest book.
-     * @param closestBookList The ArrayList to store the closest BookNode objects.
-     * @param min             The minimum absolute difference between book IDs
-     *                        encountered during the search.
-     * @return An ArrayList containing the BookNode object(s) with the closest book
-     *         ID(s) to the specified book ID.
+     * @return True for every catalog except the B+tree.
      */
-    public ArrayList<BookNode> findTheClosestBook(RedBlackNode head, int bookID, ArrayList<BookNode> closestBookList,
-            int min) {
-        if (head == null) {
+    public boolean isRedBlackTree() {
+        return true;
+    }
 
-            return closestBookList;
-        }
+    /**
+     * Takes a snapshot of the tree's structural telemetry: the rebalancing
+     * counters plus the current shape, measured by one O(n) traversal.
+     *
+     * @return The stats of the tree.
+     */
+    public RedBlackTreeStats getTreeStats() {
+        RedBlackTreeStats stats = treeStats.copyCounters();
+        stats.colorFlipCount = getColorFilpCount();
+        stats.blackHeight = getBlackHeight(headRedBlackNode);
+        measureShape(headRedBlackNode, 1, stats);
+        return stats;
+    }
 
-        if ((Math.abs(head.getBook().getBookId() - bookID)) < min) {
-            closestBookList.clear();
-            min = Math.abs(head.getBook().getBookId() - bookID);
-            closestBookList.add(head.getBook());
-        } else if ((Math.abs(head.getBook().getBookId() - bookID)) == min) {
-            closestBookList.add(head.getBook());
-        }
-        ArrayList<BookNode> leftnode = findTheClosestBook(head.getLeftRedBlackNode(), bookID, closestBookList, min);
-        for (BookNode element : leftnode) {
-            if (!closestBookList.contains(element)) {
-                closestBookList.add(element);
-            }
-        }
-        ArrayList<BookNode> rightnode = findTheClosestBook(head.getRightRedBlackNode(), bookID, closestBookList, min);
-        for (BookNode element : rightnode) {
-            if (!closestBookList.contains(element)) {
-                closestBookList.add(element);
-            }
+    /**
+     * Adds the nodes of a subtree to the node count, total depth and height of
+     * the stats.
+     */
+    private static void measureShape(RedBlackNode node, int depth, RedBlackTreeStats stats) {
+        if (node == null) {
+            return;
         }
-        return closestBookList;
+        stats.nodeCount++;
+        stats.totalNodeDepth += depth;
+        stats.height = Math.max(stats.height, depth);
+        measureShape(node.getLeftRedBlackNode(), depth + 1, stats);
+        measureShape(node.getRightRedBlackNode(), depth + 1, stats);
     }
 }
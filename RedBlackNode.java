@@ -5,7 +5,8 @@
  * to its parent, left child, and right child
  * nodes in the Red-Black Tree. Additionally, the node is assigned a color
  * (either red or black) to satisfy Red-Black Tree
- * properties.
+ * properties, and counts the available books in its subtree so availability
+ * queries can skip fully borrowed subtrees.
  */
 public class RedBlackNode {
 
@@ -14,6 +15,7 @@ public class RedBlackNode {
     private RedBlackNode leftRedBlackNode;
     private RedBlackNode rightRedBlackNode;
     public String nodeColor;
+    private int availableBookCount;
 
     /**
      * Constructs a new `RedBlackNode` with the specified book information.
@@ -26,6 +28,7 @@ public class RedBlackNode {
         this.leftRedBlackNode = null;
         this.rightRedBlackNode = null;
         this.nodeColor = LibraryActionConstant.RED_BLACK_RED_COLOR_NODE;
+        this.availableBookCount = book.isBookAvailabilityStatus() ? 1 : 0;
     }
 
     public RedBlackNode getParentRedBlackNode() {
@@ -60,6 +63,14 @@ public class RedBlackNode {
         this.rightRedBlackNode = rightRedBlackNode;
     }
 
+    public int getAvailableBookCount() {
+        return availableBookCount;
+    }
+
+    public void setAvailableBookCount(int availableBookCount) {
+        this.availableBookCount = availableBookCount;
+    }
+
     public String getRedBlackNodeColor() {
         return nodeColor;
     }
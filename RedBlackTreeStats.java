@@ -0,0 +1,80 @@
+/**
+ * The `RedBlackTreeStats` class holds the structural telemetry of a Red-Black
+ * Tree in the Gator Library Book Management System.
+ * Rotation counts and the counts of each insert and delete fix-up case are
+ * incremented by the tree as it rebalances, so they cost nothing to read. The
+ * shape of the tree (node count, height, black height and the total depth of
+ * all nodes, from which the average search depth follows) changes with every
+ * rotation, so it is measured by one traversal when a snapshot is taken.
+ * Insert fix-up cases are numbered 1-5 and delete fix-up cases 1-6, as in the
+ * comments of `RedBlackMethod`.
+ */
+public class RedBlackTreeStats {
+
+    long leftRotationCount = 0;
+    long rightRotationCount = 0;
+    // insertFixupCaseCounts[c] counts case c of the insert fix-up, index 0 is unused
+    final long[] insertFixupCaseCounts = new long[6];
+    // deleteFixupCaseCounts[c] counts case c of the delete fix-up, index 0 is unused
+    final long[] deleteFixupCaseCounts = new long[7];
+    int colorFlipCount = 0;
+    int nodeCount = 0;
+    int height = 0;
+    int blackHeight = 0;
+    long totalNodeDepth = 0;
+
+    /**
+     * Adds the rebalancing counters of another tree, for example a temporary
+     * tree that rebalanced nodes now owned by this one.
+     *
+     * @param other The stats whose counters are added.
+     */
+    synchronized void addCounters(RedBlackTreeStats other) {
+        leftRotationCount += other.leftRotationCount;
+        rightRotationCount += other.rightRotationCount;
+        for (int i = 0; i < insertFixupCaseCounts.length; i++) {
+            insertFixupCaseCounts[i] += other.insertFixupCaseCounts[i];
+        }
+        for (int i = 0; i < deleteFixupCaseCounts.length; i++) {
+            deleteFixupCaseCounts[i] += other.deleteFixupCaseCounts[i];
+        }
+    }
+
+    /**
+     * Adds the counters and shape of one shard of a partitioned catalog. Node
+     * counts and depths add up; the height and black height are those of the
+     * tallest shard.
+     *
+     * @param shard The stats of the shard.
+     */
+    void addShard(RedBlackTreeStats shard) {
+        addCounters(shard);
+        colorFlipCount += shard.colorFlipCount;
+        nodeCount += shard.nodeCount;
+        totalNodeDepth += shard.totalNodeDepth;
+        height = Math.max(height, shard.height);
+        blackHeight = Math.max(blackHeight, shard.blackHeight);
+    }
+
+    /**
+     * Gets the average number of nodes visited to find a book, counting the root
+     * as depth 1.
+     *
+     * @return The average search depth, or 0 for an empty tree.
+     */
+    public double getAverageSearchDepth() {
+        return nodeCount == 0 ? 0 : (double) totalNodeDepth / nodeCount;
+    }
+
+    /**
+     * Copies the rebalancing counters into a new snapshot whose shape is still
+     * to be measured.
+     *
+     * @return The snapshot.
+     */
+    synchronized RedBlackTreeStats copyCounters() {
+        RedBlackTreeStats snapshot = new RedBlackTreeStats();
+        snapshot.addCounters(this);
+        return snapshot;
+    }
+}
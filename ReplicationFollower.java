@@ -0,0 +1,275 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * The `ReplicationFollower` class keeps a read-only replica of a leader's
+ * catalog in the Gator Library Book Management System. A background thread
+ * connects to the `ReplicationLeader`, loads a snapshot when it is too far
+ * behind, and applies the streamed mutation commands to its own
+ * `RedBlackMethod`. The follower's own input
+ * file is served against the replica: PrintBook, PrintBooks, FindClosestBook
+ * and ColorFlipCount are answered locally, mutations are rejected, and
+ * ReplicationLag reports how many log entries the replica is behind.
+ */
+public class ReplicationFollower {
+
+    // Replica of the leader's catalog
+    private final RedBlackMethod replica;
+    // Library services applying replicated mutations, their output is discarded
+    private final GatorLibServices replicationServices;
+    // Library services answering reads into the follower's output
+    private final GatorLibServices readServices;
+    private final int leaderPort;
+    // Next log offset to apply, -1 until the first snapshot or log entry
+    private long appliedOffset = -1;
+    // Leader head offset as of the last message received
+    private long leaderHeadOffset = 0;
+    private boolean synced = false;
+    private volatile boolean running = true;
+    private Socket leaderSocket;
+
+    /**
+     * Constructs a follower replicating into the given catalog and starts the
+     * replication thread.
+     *
+     * @param replica     The catalog holding the replica.
+     * @param readServices The library services answering reads against the
+     *                    replica.
+     * @param leaderPort  The local port the leader listens on.
+     */
+    public ReplicationFollower(RedBlackMethod replica, GatorLibServices readServices, int leaderPort) {
+        this.replica = replica;
+        this.readServices = readServices;
+        this.replicationServices = new GatorLibServices(replica, Writer.nullWriter());
+        // Replicated mutations must invalidate the range results cached by the reads
+        this.replicationServices.rangeCache = readServices.rangeCache;
+        this.replicationServices.loanTracker = readServices.loanTracker;
+        this.replicationServices.holdQueue = readServices.holdQueue;
+        this.replicationServices.popularity = readServices.popularity;
+        this.replicationServices.bookIds = readServices.bookIds;
+        this.replicationServices.availableBookIds = readServices.availableBookIds;
+        this.replicationServices.changeStream = readServices.changeStream;
+        this.leaderPort = leaderPort;
+        Thread replicator = new Thread(this::replicate, "gator-replication-follower");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    /**
+     * Blocks until the replica has completed its first sync with the leader or
+     * the timeout elapses.
+     *
+     * @param timeoutMillis The maximum time to wait.
+     * @return True if the replica is synced.
+     */
+    public synchronized boolean awaitInitialSync(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (!synced && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return synced;
+    }
+
+    /**
+     * Answers one command from the follower's input against the replica.
+     *
+     * @param libraryAction The type of library action to perform.
+     * @param dataString    The full command line.
+     */
+    public synchronized void serveRead(String libraryAction, String dataString) {
+        try {
+            if (LibraryActionConstant.REPLICATION_LAG.equals(libraryAction)) {
+                readServices.writer.write("Replication Lag: " + getReplicationLag() + "\n");
+                readServices.writer.write("\n");
+            } else if (ReplicationLeader.isMutation(libraryAction)) {
+                readServices.writer.write(libraryAction + " rejected: replica is read-only\n");
+                readServices.writer.write("\n");
+            } else {
+                gatorLibrary.libraryActionPerformer(readServices, libraryAction, dataString);
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Gets the number of log entries the replica is behind the leader, as of
+     * the last message received from the leader.
+     *
+     * @return The replication lag in log entries.
+     */
+    public synchronized long getReplicationLag() {
+        return Math.max(0, leaderHeadOffset - Math.max(appliedOffset, 0));
+    }
+
+    /**
+     * Gets the next log offset the replica will apply.
+     *
+     * @return The applied offset.
+     */
+    public synchronized long getAppliedOffset() {
+        return appliedOffset;
+    }
+
+    /**
+     * Stops replicating and closes the connection to the leader.
+     */
+    public void shutdown() {
+        running = false;
+        Socket socket;
+        synchronized (this) {
+            socket = leaderSocket;
+        }
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Connects to the leader and applies its stream, reconnecting from the last
+     * applied offset when the connection drops, until the leader ends the stream
+     * or the follower shuts down.
+     */
+    private void replicate() {
+        while (running) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), leaderPort);
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    BufferedWriter out = new BufferedWriter(
+                            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                synchronized (this) {
+                    leaderSocket = socket;
+                    out.write("SYNC " + appliedOffset + "\n");
+                }
+                out.flush();
+                if (applyStream(in)) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Leader not up yet or connection lost, retry from the applied offset
+            }
+            try {
+                Thread.sleep(LibraryActionConstant.REPLICATION_CONNECT_RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies messages from the leader until the stream ends.
+     *
+     * @param in The leader connection.
+     * @return True if the leader ended the stream deliberately.
+     * @throws IOException If the connection fails.
+     */
+    private boolean applyStream(BufferedReader in) throws IOException {
+        String message;
+        while ((message = in.readLine()) != null) {
+            if (message.startsWith("LOG ")) {
+                String[] parts = message.split(" ", 4);
+                long offset = Long.parseLong(parts[1]);
+                String command = parts[3];
+                synchronized (this) {
+                    leaderHeadOffset = Math.max(leaderHeadOffset, Long.parseLong(parts[2]));
+                    if (offset == appliedOffset) {
+                        gatorLibrary.libraryActionPerformer(replicationServices,
+                                command.substring(0, command.indexOf('(')).trim(), command);
+                        appliedOffset = offset + 1;
+                    }
+                    markSynced();
+                }
+            } else if (message.startsWith("SNAPSHOT ")) {
+                String[] parts = message.split(" ");
+                long offset = Long.parseLong(parts[1]);
+                int bookCount = Integer.parseInt(parts[2]);
+                String[] bookLines = new String[bookCount];
+                for (int i = 0; i < bookCount; i++) {
+                    bookLines[i] = in.readLine();
+                    if (bookLines[i] == null) {
+                        return false;
+                    }
+                }
+                synchronized (this) {
+                    loadSnapshot(bookLines);
+                    appliedOffset = offset;
+                    leaderHeadOffset = Math.max(leaderHeadOffset, offset);
+                    markSynced();
+                }
+            } else if (message.startsWith("END ")) {
+                synchronized (this) {
+                    leaderHeadOffset = Math.max(leaderHeadOffset, Long.parseLong(message.substring(4).trim()));
+                    markSynced();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the replica's contents with the books of a snapshot. The caller
+     * must hold the follower's monitor.
+     *
+     * @param bookLines The BOOK lines of the snapshot.
+     */
+    private void loadSnapshot(String[] bookLines) {
+        replica.clearCatalog();
+        readServices.rangeCache.clear();
+        for (String bookLine : bookLines) {
+            String[] fields = bookLine.split("\t", -1);
+            BookNode book = new BookNode(Integer.parseInt(fields[1]), fields[2], fields[3],
+                    Boolean.parseBoolean(fields[4]));
+            book.setBookBorrowedBy(Integer.parseInt(fields[5]));
+            for (String patron : fields[6].split(";")) {
+                if (patron.isEmpty()) {
+                    continue;
+                }
+                String[] patronFields = patron.split(",");
+                // Appended directly in heap order, re-inserting could reorder ties
+                book.getBookReservationQueue().waitListHeap.add(new BookWaitList(Integer.parseInt(patronFields[0]),
+                        Integer.parseInt(patronFields[1]), LocalDateTime.parse(patronFields[2])));
+            }
+            replica.insertInRedBlackTree(new RedBlackNode(book), replica.getHeadRedBlackNode());
+        }
+        ArrayList<BookNode> books = replica.serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                replica.getHeadRedBlackNode(), new ArrayList<>());
+        readServices.loanTracker.resync(books);
+        // Snapshots carry no holds, keep the ones that still match the replica
+        readServices.holdQueue.retainValid(books);
+        readServices.bookIds.rebuild(books, false);
+        readServices.availableBookIds.rebuild(books, true);
+        if (readServices.changeStream != null) {
+            readServices.changeStream.publish(CatalogChangeStream.EventType.CATALOG_REPLACED, -1, -1,
+                    readServices.loanTracker.getCurrentTick());
+        }
+    }
+
+    /**
+     * Marks the first sync as complete and wakes threads waiting for it. The
+     * caller must hold the follower's monitor.
+     */
+    private void markSynced() {
+        if (!synced) {
+            synced = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * The `ReplicationLeader` class streams the ordered mutation log of the Gator
+ * Library Book Management System to follower processes over local sockets.
+ * Every mutation command (InsertBook, DeleteBook, BorrowBook, ReturnBook and
+ * the range and catalog-merge commands) is applied to the leader's catalog and
+ * appended to the log under the same monitor, so a log offset always
+ * identifies one exact catalog state.
+ * A follower connects and sends the offset it has applied up to. If that offset
+ * is still in the retained log the leader streams from there, otherwise it
+ * first sends a snapshot of the catalog taken at the current offset.
+ *
+ * Wire format (one message per line):
+ * follower: SYNC offset
+ * leader: SNAPSHOT offset bookCount, followed by bookCount BOOK lines
+ * leader: LOG offset leaderHead commandLine
+ * leader: END offset
+ */
+public class ReplicationLeader {
+
+    // Catalog the log is applied to
+    private final RedBlackMethod rb;
+    // Library services applying the commands to the catalog
+    private final GatorLibServices services;
+    // Server socket accepting follower connections
+    private final ServerSocket serverSocket;
+    // Retained log entries, logEntries.get(0) has offset logBaseOffset
+    private final ArrayList<String> logEntries = new ArrayList<>();
+    private long logBaseOffset = 0;
+    // Follower connection threads, joined when the leader shuts down
+    private final ArrayList<Thread> followerHandlers = new ArrayList<>();
+    private boolean closed = false;
+
+    /**
+     * Constructs a leader publishing the mutations applied to the given catalog
+     * and starts accepting followers on the given local port.
+     *
+     * @param rb       The catalog the mutations are applied to.
+     * @param services The library services applying commands to the catalog.
+     * @param port     The local port followers connect to.
+     * @throws IOException If the port cannot be bound.
+     */
+    public ReplicationLeader(RedBlackMethod rb, GatorLibServices services, int port) throws IOException {
+        this.rb = rb;
+        this.services = services;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptFollowers, "gator-replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Checks whether a library action changes the catalog and must be replicated.
+     *
+     * @param libraryAction The library action.
+     * @return True for the commands that insert, delete, borrow, return or merge
+     *         books, for picking up held books, and for Overdue and
+     *         AdvanceClock, which move the logical clock that due dates and
+     *         hold expiries are based on.
+     */
+    static boolean isMutation(String libraryAction) {
+        return LibraryActionConstant.INSERT_BOOK.equals(libraryAction)
+                || LibraryActionConstant.DELETE_BOOK.equals(libraryAction)
+                || LibraryActionConstant.DELETE_BOOKS.equals(libraryAction)
+                || LibraryActionConstant.EXTRACT_BOOKS.equals(libraryAction)
+                || LibraryActionConstant.UNION_CATALOG.equals(libraryAction)
+                || LibraryActionConstant.INTERSECT_CATALOG.equals(libraryAction)
+                || LibraryActionConstant.DIFFERENCE_CATALOG.equals(libraryAction)
+                || LibraryActionConstant.OVERDUE.equals(libraryAction)
+                || LibraryActionConstant.ADVANCE_CLOCK.equals(libraryAction)
+                || LibraryActionConstant.PICK_UP_BOOK.equals(libraryAction)
+                || LibraryActionConstant.BORROW_BOOK.equals(libraryAction)
+                || LibraryActionConstant.RETURN_BOOK.equals(libraryAction);
+    }
+
+    /**
+     * Applies a command to the leader's catalog and, if it is a mutation, appends
+     * it to the replication log and wakes the follower connections.
+     *
+     * @param libraryAction The type of library action to perform.
+     * @param dataString    The full command line.
+     */
+    public synchronized void applyAndPublish(String libraryAction, String dataString) {
+        gatorLibrary.libraryActionPerformer(services, libraryAction, dataString);
+        if (!isMutation(libraryAction)) {
+            return;
+        }
+        logEntries.add(dataString.trim());
+        if (logEntries.size() > LibraryActionConstant.REPLICATION_LOG_RETENTION) {
+            // Drop the oldest half, followers behind it catch up from a snapshot
+            int dropped = logEntries.size() / 2;
+            logEntries.subList(0, dropped).clear();
+            logBaseOffset += dropped;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Gets the offset the next mutation will be written at.
+     *
+     * @return The head offset of the replication log.
+     */
+    public synchronized long getLogHeadOffset() {
+        return logBaseOffset + logEntries.size();
+    }
+
+    /**
+     * Stops accepting followers, lets the connected ones drain the log and then
+     * closes their connections.
+     */
+    public void shutdown() {
+        ArrayList<Thread> handlers;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            handlers = new ArrayList<>(followerHandlers);
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+
+        }
+        for (Thread handler : handlers) {
+            try {
+                handler.join(LibraryActionConstant.REPLICATION_DRAIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Accepts follower connections until the leader shuts down, serving each one
+     * on its own thread.
+     */
+    private void acceptFollowers() {
+        while (true) {
+            try {
+                Socket follower = serverSocket.accept();
+                Thread handler = new Thread(() -> serveFollower(follower), "gator-replication-follower");
+                synchronized (this) {
+                    if (closed) {
+                        follower.close();
+                        return;
+                    }
+                    followerHandlers.add(handler);
+                }
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Brings one follower up to date and then streams new log entries to it as
+     * they are published.
+     *
+     * @param follower The follower connection.
+     */
+    private void serveFollower(Socket follower) {
+        try (Socket socket = follower;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                BufferedWriter out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String request = in.readLine();
+            if (request == null || !request.startsWith("SYNC ")) {
+                return;
+            }
+            long nextOffset = Long.parseLong(request.substring(5).trim());
+
+            while (true) {
+                ArrayList<String> batch = new ArrayList<>();
+                String snapshot = null;
+                long batchOffset;
+                long head;
+                boolean finished;
+                synchronized (this) {
+                    while (!closed && nextOffset == logBaseOffset + logEntries.size()) {
+                        wait();
+                    }
+                    if (nextOffset < logBaseOffset || nextOffset > logBaseOffset + logEntries.size()) {
+                        // The follower is behind the retained log (or ahead of it), resend everything
+                        nextOffset = logBaseOffset + logEntries.size();
+                        snapshot = renderSnapshot(nextOffset);
+                    }
+                    batchOffset = nextOffset;
+                    batch.addAll(logEntries.subList((int) (nextOffset - logBaseOffset), logEntries.size()));
+                    head = logBaseOffset + logEntries.size();
+                    finished = closed;
+                }
+                // Write outside the monitor so a slow follower never stalls the leader
+                if (snapshot != null) {
+                    out.write(snapshot);
+                }
+                for (String entry : batch) {
+                    out.write("LOG " + batchOffset + " " + head + " " + entry + "\n");
+                    batchOffset++;
+                }
+                nextOffset = batchOffset;
+                if (finished) {
+                    out.write("END " + nextOffset + "\n");
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Renders a snapshot of every book in the catalog. The caller must hold the
+     * leader's monitor so the snapshot matches the given offset exactly.
+     *
+     * @param offset The log offset the snapshot corresponds to.
+     * @return The SNAPSHOT header followed by one BOOK line per book.
+     */
+    private String renderSnapshot(long offset) {
+        ArrayList<BookNode> books = rb.serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                rb.getHeadRedBlackNode(), new ArrayList<>());
+        StringBuilder snapshot = new StringBuilder();
+        snapshot.append("SNAPSHOT ").append(offset).append(' ').append(books.size()).append('\n');
+        for (BookNode book : books) {
+            snapshot.append("BOOK\t")
+                    .append(book.getBookId()).append('\t')
+                    .append(book.getBookName()).append('\t')
+                    .append(book.getBookAuthorName()).append('\t')
+                    .append(book.isBookAvailabilityStatus()).append('\t')
+                    .append(book.getBookBorrowedBy()).append('\t');
+            // Heap order is kept as-is so the follower's waitlist is identical
+            for (BookWaitList patron : book.getBookReservationQueue().getBookReservationList()) {
+                snapshot.append(patron.getPatronId()).append(',')
+                        .append(patron.getPriorityNumber()).append(',')
+                        .append(patron.getTimeOfReservation()).append(';');
+            }
+            snapshot.append('\n');
+        }
+        return snapshot.toString();
+    }
+}
@@ -0,0 +1,653 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The `ShardedRedBlackMethod` class is a range-partitioned catalog for the
+ * Gator Library Book Management System. Book IDs are split into contiguous
+ * ranges, each range is held by its own `RedBlackMethod` tree, and every tree
+ * is guarded by its own lock so that writes to different shards never contend
+ * with each other.
+ * Point commands (InsertBook, BorrowBook, ReturnBook, DeleteBook, PrintBook)
+ * run on the calling thread under the lock of the one shard owning the book
+ * ID, so the waves of `--parallel` write to different shards at the same time.
+ * PrintBooks is executed as a parallel scatter-gather across the shards it
+ * touches, and the partial results are merged back in book ID order.
+ * When a shard grows hot its boundary with the lighter neighbour is moved and
+ * the books in between migrate, keeping shard sizes balanced. Migration is not
+ * a change to the catalog, so its colour flips and rotations are not counted.
+ * The class extends `RedBlackMethod` so `GatorLibServices` can use it as a
+ * drop-in replacement; the `head` arguments of the inherited signatures are
+ * ignored because routing decides the tree.
+ */
+public class ShardedRedBlackMethod extends RedBlackMethod {
+
+    // One Red-Black tree per shard, in ascending key-range order
+    private final RedBlackMethod[] shards;
+    // The lock guarding each shard's tree
+    private final ReentrantLock[] shardLocks;
+    // Runs the per-shard parts of scatter-gather commands in parallel
+    private final ExecutorService scatterThreads;
+    // Number of books held by each shard
+    private final AtomicInteger[] shardSizes;
+    // shardLowerBound[i] is the smallest book ID routed to shard i
+    private final int[] shardLowerBound;
+    // Point commands hold the read lock, boundary moves hold the write lock
+    private final ReentrantReadWriteLock boundaryLock = new ReentrantReadWriteLock();
+    // Number of boundary moves performed so far
+    private int rebalanceCount = 0;
+
+    /**
+     * Constructs a sharded catalog with the given number of shards, splitting the
+     * default key space evenly between them.
+     *
+     * @param shardCount The number of shards (and scatter threads) to create.
+     */
+    public ShardedRedBlackMethod(int shardCount) {
+        this(shardCount, LibraryActionConstant.SHARD_INITIAL_KEY_SPACE);
+    }
+
+    /**
+     * Constructs a sharded catalog with the given number of shards, splitting the
+     * book IDs in [0, keySpace) evenly between them. IDs outside that range go to
+     * the first or last shard.
+     *
+     * @param shardCount The number of shards (and scatter threads) to create.
+     * @param keySpace   The expected upper bound of book IDs.
+     */
+    public ShardedRedBlackMethod(int shardCount, int keySpace) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        shards = new RedBlackMethod[shardCount];
+        shardLocks = new ReentrantLock[shardCount];
+        shardSizes = new AtomicInteger[shardCount];
+        shardLowerBound = new int[shardCount];
+        AtomicInteger threadCount = new AtomicInteger();
+        scatterThreads = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "gator-shard-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new RedBlackMethod();
+            shardLocks[i] = new ReentrantLock();
+            shardSizes[i] = new AtomicInteger();
+            shardLowerBound[i] = i == 0 ? Integer.MIN_VALUE : (int) ((long) keySpace * i / shardCount);
+        }
+    }
+
+    /**
+     * Returns the index of the shard whose key range contains the given book ID.
+     * The caller must hold the boundary lock.
+     *
+     * @param bookId The book ID to route.
+     * @return The index of the owning shard.
+     */
+    private int shardFor(int bookId) {
+        int low = 0;
+        int high = shardLowerBound.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (shardLowerBound[mid] <= bookId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Runs a task against the given shard on the calling thread, holding the
+     * shard's lock.
+     *
+     * @param shardIndex The shard to run the task on.
+     * @param task       The task to run.
+     * @return The result of the task.
+     */
+    private <T> T runOnShard(int shardIndex, Supplier<T> task) {
+        shardLocks[shardIndex].lock();
+        try {
+            return task.get();
+        } finally {
+            shardLocks[shardIndex].unlock();
+        }
+    }
+
+    /**
+     * Starts a task against the given shard on a scatter thread, holding the
+     * shard's lock, so that commands touching several shards run them in
+     * parallel.
+     *
+     * @param shardIndex The shard to run the task on.
+     * @param task       The task to run.
+     * @return The pending result of the task.
+     */
+    private <T> Future<T> submitToShard(int shardIndex, Supplier<T> task) {
+        return scatterThreads.submit(() -> runOnShard(shardIndex, task));
+    }
+
+    /**
+     * Waits for a task submitted to a scatter thread and unwraps its failure.
+     *
+     * @param pending The pending shard task.
+     * @return The result of the task.
+     */
+    private <T> T awaitShard(Future<T> pending) {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public RedBlackNode searchWithInRedBlackTree(RedBlackNode head, int bookId) {
+        boundaryLock.readLock().lock();
+        try {
+            int shardIndex = shardFor(bookId);
+            RedBlackMethod shard = shards[shardIndex];
+            return runOnShard(shardIndex,
+                    () -> shard.searchWithInRedBlackTree(shard.getHeadRedBlackNode(), bookId));
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for several books by splitting the sorted book IDs into one run
+     * per shard and finger searching the runs on their shards in parallel.
+     */
+    @Override
+    public BookNode[] searchSortedInRedBlackTree(int[] sortedBookIds) {
+        BookNode[] books = new BookNode[sortedBookIds.length];
+        boundaryLock.readLock().lock();
+        try {
+            ArrayList<Future<BookNode[]>> pending = new ArrayList<>();
+            ArrayList<Integer> runStarts = new ArrayList<>();
+            int start = 0;
+            while (start < sortedBookIds.length) {
+                int shardIndex = shardFor(sortedBookIds[start]);
+                int end = start + 1;
+                while (end < sortedBookIds.length && shardFor(sortedBookIds[end]) == shardIndex) {
+                    end++;
+                }
+                int[] run = Arrays.copyOfRange(sortedBookIds, start, end);
+                RedBlackMethod shard = shards[shardIndex];
+                pending.add(submitToShard(shardIndex, () -> shard.searchSortedInRedBlackTree(run)));
+                runStarts.add(start);
+                start = end;
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                BookNode[] partial = awaitShard(pending.get(i));
+                System.arraycopy(partial, 0, books, runStarts.get(i), partial.length);
+            }
+            return books;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public LibraryActionResult checkForBorrowInRedBlackTree(RedBlackNode head, int bookId, int patronID,
+            int priorityNumber) {
+        boundaryLock.readLock().lock();
+        try {
+            int shardIndex = shardFor(bookId);
+            RedBlackMethod shard = shards[shardIndex];
+            return runOnShard(shardIndex, () -> shard.checkForBorrowInRedBlackTree(shard.getHeadRedBlackNode(),
+                    bookId, patronID, priorityNumber));
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public LibraryActionResult returnBookActionInRedBlackTree(RedBlackNode head, int bookId, int patronID) {
+        boundaryLock.readLock().lock();
+        try {
+            int shardIndex = shardFor(bookId);
+            RedBlackMethod shard = shards[shardIndex];
+            return runOnShard(shardIndex,
+                    () -> shard.returnBookActionInRedBlackTree(shard.getHeadRedBlackNode(), bookId, patronID));
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertInRedBlackTree(RedBlackNode newBookNode, RedBlackNode head) {
+        int bookId = newBookNode.getBook().getBookId();
+        int shardIndex;
+        boundaryLock.readLock().lock();
+        try {
+            shardIndex = shardFor(bookId);
+            RedBlackMethod shard = shards[shardIndex];
+            boolean inserted = runOnShard(shardIndex, () -> {
+                if (shard.searchWithInRedBlackTree(shard.getHeadRedBlackNode(), bookId) != null) {
+                    return false;
+                }
+                shard.insertInRedBlackTree(newBookNode, shard.getHeadRedBlackNode());
+                return true;
+            });
+            if (!inserted) {
+                return;
+            }
+            shardSizes[shardIndex].incrementAndGet();
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+        rebalanceIfHot(shardIndex);
+    }
+
+    @Override
+    public LibraryActionResult deleteFromRedBlackTree(int bookID, RedBlackNode head) {
+        boundaryLock.readLock().lock();
+        try {
+            int shardIndex = shardFor(bookID);
+            RedBlackMethod shard = shards[shardIndex];
+            LibraryActionResult result = runOnShard(shardIndex,
+                    () -> shard.deleteFromRedBlackTree(bookID, shard.getHeadRedBlackNode()));
+            if (result.outcome != LibraryActionResult.Outcome.NOT_FOUND) {
+                shardSizes[shardIndex].decrementAndGet();
+            }
+            return result;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the books within the given ID range by scattering the range search
+     * to every overlapping shard in parallel and concatenating the sorted partial
+     * results in shard order.
+     */
+    @Override
+    public ArrayList<BookNode> serachTheRedBlackTreeInRange(int startBookID, int endBookID, RedBlackNode head,
+            ArrayList<BookNode> books) {
+        if (startBookID > endBookID) {
+            return books;
+        }
+        boundaryLock.readLock().lock();
+        try {
+            int firstShard = shardFor(startBookID);
+            int lastShard = shardFor(endBookID);
+            ArrayList<Future<ArrayList<BookNode>>> pending = new ArrayList<>();
+            for (int i = firstShard; i <= lastShard; i++) {
+                RedBlackMethod shard = shards[i];
+                pending.add(submitToShard(i, () -> {
+                    ArrayList<BookNode> partial = shard.serachTheRedBlackTreeInRange(startBookID, endBookID,
+                            shard.getHeadRedBlackNode(), new ArrayList<>());
+                    Collections.sort(partial, (b1, b2) -> Integer.compare(b1.getBookId(), b2.getBookId()));
+                    return partial;
+                }));
+            }
+            for (Future<ArrayList<BookNode>> partial : pending) {
+                books.addAll(awaitShard(partial));
+            }
+            return books;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects one page of a range by asking the overlapping shards in key order
+     * for the remainder of the page, stopping as soon as the page is full.
+     */
+    @Override
+    public ArrayList<BookNode> searchTheRedBlackTreePage(int startBookID, int endBookID, int afterBookID,
+            int maxBooks) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        if (startBookID > endBookID) {
+            return books;
+        }
+        boundaryLock.readLock().lock();
+        try {
+            int lastShard = shardFor(endBookID);
+            for (int i = shardFor(startBookID); i <= lastShard && books.size() < maxBooks; i++) {
+                RedBlackMethod shard = shards[i];
+                int remaining = maxBooks - books.size();
+                books.addAll(runOnShard(i,
+                        () -> shard.searchTheRedBlackTreePage(startBookID, endBookID, afterBookID, remaining)));
+            }
+            return books;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the next available book by asking the shard owning the book ID and
+     * then the shards after it, in key order, until one has an available book.
+     */
+    @Override
+    public BookNode findNextAvailableBook(int bookID) {
+        boundaryLock.readLock().lock();
+        try {
+            for (int i = shardFor(bookID); i < shards.length; i++) {
+                RedBlackMethod shard = shards[i];
+                BookNode book = runOnShard(i, () -> shard.findNextAvailableBook(bookID));
+                if (book != null) {
+                    return book;
+                }
+            }
+            return null;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Extracts a range by splitting it out of every overlapping shard and
+     * joining the extracted pieces in shard order.
+     */
+    @Override
+    public RedBlackMethod extractRangeFromRedBlackTree(int startBookID, int endBookID) {
+        RedBlackMethod extracted = new RedBlackMethod();
+        if (startBookID > endBookID) {
+            return extracted;
+        }
+        boundaryLock.readLock().lock();
+        try {
+            int lastShard = shardFor(endBookID);
+            for (int i = shardFor(startBookID); i <= lastShard; i++) {
+                RedBlackMethod shard = shards[i];
+                RedBlackMethod piece = runOnShard(i, () -> shard.extractRangeFromRedBlackTree(startBookID, endBookID));
+                int removed = 0;
+                RedBlackCursor cursor = new RedBlackCursor(piece);
+                for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+                    removed++;
+                }
+                shardSizes[i].addAndGet(-removed);
+                extracted.joinRedBlackTree(piece);
+            }
+            return extracted;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public RedBlackMethod splitRedBlackTree(int bookId) {
+        return extractRangeFromRedBlackTree(bookId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends the books of the given tree by routing each one to its shard, as
+     * the shard boundaries need not line up with the joined range.
+     */
+    @Override
+    public void joinRedBlackTree(RedBlackMethod upperTree) {
+        RedBlackCursor cursor = new RedBlackCursor(upperTree);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            insertInRedBlackTree(new RedBlackNode(cursor.getBook()), null);
+        }
+        upperTree.headRedBlackNode = null;
+    }
+
+    /**
+     * Unions each shard with the part of the other catalog in its key range,
+     * all shards in parallel.
+     */
+    @Override
+    public void unionRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        applyPerShard(other, (shard, piece) -> shard.unionRedBlackTree(piece, policy));
+    }
+
+    /**
+     * Intersects each shard with the part of the other catalog in its key range,
+     * all shards in parallel.
+     */
+    @Override
+    public void intersectRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        applyPerShard(other, (shard, piece) -> shard.intersectRedBlackTree(piece, policy));
+    }
+
+    /**
+     * Subtracts from each shard the part of the other catalog in its key range,
+     * all shards in parallel.
+     */
+    @Override
+    public void differenceRedBlackTree(RedBlackMethod other) {
+        applyPerShard(other, (shard, piece) -> shard.differenceRedBlackTree(piece));
+    }
+
+    /**
+     * Splits the other catalog along the shard boundaries and applies a set
+     * operation to every shard and its piece in parallel, then recounts the
+     * shard sizes.
+     *
+     * @param other     The catalog to combine with, left empty.
+     * @param operation The set operation applied to a shard and its piece.
+     */
+    private void applyPerShard(RedBlackMethod other, BiConsumer<RedBlackMethod, RedBlackMethod> operation) {
+        boundaryLock.readLock().lock();
+        try {
+            ArrayList<Future<Integer>> pending = new ArrayList<>();
+            for (int i = shards.length - 1; i >= 0; i--) {
+                RedBlackMethod shard = shards[i];
+                RedBlackMethod piece = other.splitRedBlackTree(shardLowerBound[i]);
+                pending.add(submitToShard(i, () -> {
+                    operation.accept(shard, piece);
+                    return shard.serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                            shard.getHeadRedBlackNode(), new ArrayList<>()).size();
+                }));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                shardSizes[shards.length - 1 - i].set(awaitShard(pending.get(i)));
+            }
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Empties every shard. The shard boundaries are kept.
+     */
+    @Override
+    public void clearCatalog() {
+        boundaryLock.writeLock().lock();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                RedBlackMethod shard = shards[i];
+                runOnShard(i, () -> {
+                    shard.clearCatalog();
+                    return null;
+                });
+                shardSizes[i].set(0);
+            }
+            super.clearCatalog();
+        } finally {
+            boundaryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the count of colour flips summed over every shard.
+     *
+     * @return The total count of colour flips.
+     */
+    @Override
+    public int getColorFilpCount() {
+        boundaryLock.readLock().lock();
+        try {
+            int total = 0;
+            for (int i = 0; i < shards.length; i++) {
+                RedBlackMethod shard = shards[i];
+                total += runOnShard(i, shard::getColorFilpCount);
+            }
+            return total;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Combines the structural telemetry of every shard: counters, node counts
+     * and depths are summed, height and black height are the tallest shard's.
+     *
+     * @return The combined stats.
+     */
+    @Override
+    public RedBlackTreeStats getTreeStats() {
+        boundaryLock.readLock().lock();
+        try {
+            RedBlackTreeStats total = new RedBlackTreeStats();
+            for (int i = 0; i < shards.length; i++) {
+                RedBlackMethod shard = shards[i];
+                total.addShard(runOnShard(i, shard::getTreeStats));
+            }
+            return total;
+        } finally {
+            boundaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the boundary between a hot shard and its lighter neighbour when the
+     * shard holds more than `SHARD_REBALANCE_FACTOR` times the average shard
+     * size. Half of the size difference migrates to the neighbour, taken from
+     * the edge of the hot shard adjacent to it so ranges stay contiguous.
+     *
+     * @param shardIndex The shard that has just grown.
+     */
+    private void rebalanceIfHot(int shardIndex) {
+        if (shards.length == 1 || !isHot(shardIndex)) {
+            return;
+        }
+        boundaryLock.writeLock().lock();
+        try {
+            // Re-check under the write lock, another insert may have rebalanced already
+            if (!isHot(shardIndex)) {
+                return;
+            }
+            int neighbour;
+            if (shardIndex == 0) {
+                neighbour = 1;
+            } else if (shardIndex == shards.length - 1) {
+                neighbour = shardIndex - 1;
+            } else {
+                neighbour = shardSizes[shardIndex - 1].get() <= shardSizes[shardIndex + 1].get() ? shardIndex - 1
+                        : shardIndex + 1;
+            }
+            int booksToMove = (shardSizes[shardIndex].get() - shardSizes[neighbour].get()) / 2;
+            if (booksToMove <= 0) {
+                return;
+            }
+
+            RedBlackMethod hotShard = shards[shardIndex];
+            ArrayList<BookNode> hotBooks = runOnShard(shardIndex, () -> {
+                ArrayList<BookNode> all = hotShard.serachTheRedBlackTreeInRange(Integer.MIN_VALUE,
+                        Integer.MAX_VALUE, hotShard.getHeadRedBlackNode(), new ArrayList<>());
+                Collections.sort(all, (b1, b2) -> Integer.compare(b1.getBookId(), b2.getBookId()));
+                return all;
+            });
+            ArrayList<BookNode> movingBooks = neighbour > shardIndex
+                    ? new ArrayList<>(hotBooks.subList(hotBooks.size() - booksToMove, hotBooks.size()))
+                    : new ArrayList<>(hotBooks.subList(0, booksToMove));
+
+            runOnShard(shardIndex, () -> migrate(hotShard, () -> {
+                for (BookNode book : movingBooks) {
+                    hotShard.deleteFromRedBlackTree(book.getBookId(), hotShard.getHeadRedBlackNode());
+                }
+            }));
+            RedBlackMethod coldShard = shards[neighbour];
+            runOnShard(neighbour, () -> migrate(coldShard, () -> {
+                for (BookNode book : movingBooks) {
+                    coldShard.insertInRedBlackTree(new RedBlackNode(book), coldShard.getHeadRedBlackNode());
+                }
+            }));
+            shardSizes[shardIndex].addAndGet(-booksToMove);
+            shardSizes[neighbour].addAndGet(booksToMove);
+
+            if (neighbour > shardIndex) {
+                shardLowerBound[neighbour] = movingBooks.get(0).getBookId();
+            } else {
+                shardLowerBound[shardIndex] = movingBooks.get(movingBooks.size() - 1).getBookId() + 1;
+            }
+            rebalanceCount++;
+        } finally {
+            boundaryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs one side of a migration on a shard without counting the colour
+     * flips, rotations and fix-up cases it causes, as no command changed the
+     * catalog. The caller must hold the shard's lock.
+     *
+     * @param shard     The shard books migrate from or to.
+     * @param migration The deletes or inserts moving the books.
+     * @return Always null.
+     */
+    private static Void migrate(RedBlackMethod shard, Runnable migration) {
+        int colorFlipCount = shard.colorFlipCount;
+        RedBlackTreeStats counters = shard.treeStats.copyCounters();
+        migration.run();
+        shard.colorFlipCount = colorFlipCount;
+        shard.treeStats = counters;
+        return null;
+    }
+
+    /**
+     * Checks whether a shard holds disproportionately many books.
+     *
+     * @param shardIndex The shard to check.
+     * @return True if the shard should hand books to a neighbour.
+     */
+    private boolean isHot(int shardIndex) {
+        int total = 0;
+        for (AtomicInteger size : shardSizes) {
+            total += size.get();
+        }
+        int shardSize = shardSizes[shardIndex].get();
+        return shardSize >= LibraryActionConstant.SHARD_MIN_REBALANCE_SIZE
+                && shardSize > LibraryActionConstant.SHARD_REBALANCE_FACTOR * total / shards.length;
+    }
+
+    /**
+     * Gets the number of boundary moves performed so far.
+     *
+     * @return The number of rebalances.
+     */
+    public int getRebalanceCount() {
+        return rebalanceCount;
+    }
+
+    /**
+     * Gets the number of books currently held by each shard.
+     *
+     * @return The shard sizes in key-range order.
+     */
+    public int[] getShardSizes() {
+        int[] sizes = new int[shardSizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = shardSizes[i].get();
+        }
+        return sizes;
+    }
+
+    /**
+     * Stops the scatter threads.
+     */
+    public void shutdown() {
+        scatterThreads.shutdown();
+    }
+}
@@ -0,0 +1,617 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The `TieredRedBlackMethod` class is a log-structured catalog for the Gator
+ * Library Book Management System, for collections larger than the heap.
+ * The inherited Red-Black Tree is the memtable: inserts, borrows, returns and
+ * deletes all happen in memory, and once the memtable holds
+ * `TIERED_MEMTABLE_BOOKS` books and deletions it is written out as an
+ * immutable `BookSegment` file, sorted by book ID, and emptied. A book on disk
+ * that is borrowed or returned is first copied back into the memtable, where
+ * the newer copy hides the one on disk; a deleted book leaves a deletion that
+ * hides it in older segments until compaction drops it.
+ * Lookups try the memtable and then the segments from newest to oldest, each
+ * behind its Bloom filter and sparse index, and range commands merge all tiers
+ * in book ID order. Segments are compacted on a background thread:
+ * `TIERED_COMPACTION_FAN_IN` segments of one tier are merged into one segment
+ * of the next, so each book is rewritten O(log n) times.
+ * Records hold the whole book, title and author included, so a flushed book
+ * takes no heap beyond its segment's index and Bloom filter. The segment files
+ * are scratch space all the same: the memtable is not logged, so the catalog
+ * cannot be reopened, and the files are deleted when the process exits, after
+ * a running compaction has finished. The catalog reports the shape of its
+ * memtable.
+ * The compaction thread swaps its merged segment in under the catalog's
+ * monitor, which every public method holds.
+ */
+public class TieredRedBlackMethod extends RedBlackMethod {
+
+    private static final int FAN_IN = LibraryActionConstant.TIERED_COMPACTION_FAN_IN;
+
+    private final File segmentDirectory;
+    private final int memtableCapacity;
+    private final ExecutorService compactor;
+    // Segments from oldest to newest
+    private final ArrayList<BookSegment> segments = new ArrayList<>();
+    // Book IDs deleted from the memtable that a segment may still hold
+    private BookIdBitmap deletedBookIds = new BookIdBitmap();
+    private int deletedBookCount = 0;
+    private int memtableBookCount = 0;
+    private long nextSegmentNumber = 0;
+    private boolean compacting = false;
+
+    /**
+     * Constructs an empty catalog.
+     *
+     * @param segmentDirectory The directory the segment files are written to.
+     * @param memtableCapacity The number of books and deletions the memtable
+     *                         holds before it is flushed.
+     */
+    public TieredRedBlackMethod(File segmentDirectory, int memtableCapacity) {
+        this.segmentDirectory = segmentDirectory;
+        this.memtableCapacity = Math.max(1, memtableCapacity);
+        segmentDirectory.mkdirs();
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gator-segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::deleteSegments, "gator-segment-cleaner"));
+    }
+
+    /**
+     * Walks the books of every tier in ascending book ID order. At each book ID
+     * the newest tier holding it decides, the memtable and its deletions before
+     * the segments from newest to oldest, so older copies and deleted books are
+     * skipped. A cursor is only valid until the catalog is next modified.
+     */
+    private final class MergedCursor {
+        private final RedBlackCursor memtable = new RedBlackCursor(TieredRedBlackMethod.this);
+        // Smallest deleted ID not yet passed, null when none is left
+        private Integer deleted;
+        // Cursors of the segments, newest first
+        private final BookSegment.Cursor[] segmentCursors = new BookSegment.Cursor[segments.size()];
+        private BookNode current;
+
+        MergedCursor() {
+            for (int i = 0; i < segmentCursors.length; i++) {
+                segmentCursors[i] = segments.get(segmentCursors.length - 1 - i).cursor();
+            }
+        }
+
+        boolean seek(int bookId) {
+            memtable.seek(bookId);
+            deleted = deletedBookIds.ceiling(bookId);
+            for (BookSegment.Cursor cursor : segmentCursors) {
+                cursor.seek(bookId);
+            }
+            return advance();
+        }
+
+        boolean isValid() {
+            return current != null;
+        }
+
+        BookNode getBook() {
+            return current;
+        }
+
+        boolean next() {
+            return current != null && advance();
+        }
+
+        /**
+         * Moves every tier past the smallest book ID any of them is positioned
+         * on, until that ID turns out to hold a book.
+         */
+        private boolean advance() {
+            current = null;
+            while (current == null) {
+                long bookId = Long.MAX_VALUE;
+                if (memtable.isValid()) {
+                    bookId = memtable.getBook().getBookId();
+                }
+                if (deleted != null) {
+                    bookId = Math.min(bookId, deleted);
+                }
+                for (BookSegment.Cursor cursor : segmentCursors) {
+                    if (cursor.isValid()) {
+                        bookId = Math.min(bookId, cursor.getBookId());
+                    }
+                }
+                if (bookId == Long.MAX_VALUE) {
+                    return false;
+                }
+                boolean decided = false;
+                if (memtable.isValid() && memtable.getBook().getBookId() == bookId) {
+                    current = memtable.getBook();
+                    decided = true;
+                    memtable.next();
+                }
+                if (deleted != null && deleted == bookId) {
+                    decided = true;
+                    deleted = bookId == Integer.MAX_VALUE ? null : deletedBookIds.ceiling((int) bookId + 1);
+                }
+                for (BookSegment.Cursor cursor : segmentCursors) {
+                    if (cursor.isValid() && cursor.getBookId() == bookId) {
+                        if (!decided) {
+                            current = cursor.isDeleted() ? null : cursor.getBook();
+                            decided = true;
+                        }
+                        cursor.next();
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized RedBlackNode searchWithInRedBlackTree(RedBlackNode head, int bookId) {
+        RedBlackNode node = findRedBlackNode(bookId);
+        if (node != null) {
+            return node;
+        }
+        BookNode book = findInSegments(bookId);
+        return book == null ? null : new RedBlackNode(book);
+    }
+
+    /**
+     * Searches for several books with one finger search of the memtable; only
+     * the book IDs it does not hold are looked up in the segments.
+     */
+    @Override
+    public synchronized BookNode[] searchSortedInRedBlackTree(int[] sortedBookIds) {
+        BookNode[] books = super.searchSortedInRedBlackTree(sortedBookIds);
+        for (int i = 0; i < books.length; i++) {
+            if (books[i] == null) {
+                books[i] = findInSegments(sortedBookIds[i]);
+            }
+        }
+        return books;
+    }
+
+    @Override
+    public synchronized LibraryActionResult checkForBorrowInRedBlackTree(RedBlackNode head, int bookId,
+            int patronID, int priorityNumber) {
+        // Borrow the memtable copy of the book, updated in place
+        LibraryActionResult result = super.checkForBorrowInRedBlackTree(promote(bookId), bookId, patronID,
+                priorityNumber);
+        flushIfFull();
+        return result;
+    }
+
+    @Override
+    public synchronized LibraryActionResult returnBookActionInRedBlackTree(RedBlackNode head, int bookId,
+            int patronID) {
+        // Return the memtable copy of the book, updated in place
+        LibraryActionResult result = super.returnBookActionInRedBlackTree(promote(bookId), bookId, patronID);
+        flushIfFull();
+        return result;
+    }
+
+    @Override
+    public synchronized void insertInRedBlackTree(RedBlackNode newBookNode, RedBlackNode head) {
+        int bookId = newBookNode.getBook().getBookId();
+        if (findRedBlackNode(bookId) != null || findInSegments(bookId) != null) {
+            return;
+        }
+        super.insertInRedBlackTree(newBookNode, headRedBlackNode);
+        memtableBookCount++;
+        if (deletedBookIds.contains(bookId)) {
+            // The new book hides the older segments itself
+            deletedBookIds.set(bookId, false);
+            deletedBookCount--;
+        }
+        flushIfFull();
+    }
+
+    @Override
+    public synchronized LibraryActionResult deleteFromRedBlackTree(int bookID, RedBlackNode head) {
+        LibraryActionResult deletionResult;
+        if (findRedBlackNode(bookID) != null) {
+            deletionResult = super.deleteFromRedBlackTree(bookID, headRedBlackNode);
+            memtableBookCount--;
+        } else {
+            BookNode book = findInSegments(bookID);
+            if (book == null) {
+                return LibraryActionResult.NOT_FOUND;
+            }
+            deletionResult = LibraryActionResult.deleted(book);
+        }
+        markDeleted(bookID);
+        flushIfFull();
+        return deletionResult;
+    }
+
+    /**
+     * Removes the books of a range one at a time, leaving a deletion for each
+     * book a segment may hold, and returns them in a Red-Black Tree.
+     */
+    @Override
+    public synchronized RedBlackMethod extractRangeFromRedBlackTree(int startBookID, int endBookID) {
+        RedBlackMethod extracted = new RedBlackMethod();
+        ArrayList<BookNode> books = serachTheRedBlackTreeInRange(startBookID, endBookID, null, new ArrayList<>());
+        for (BookNode book : books) {
+            removeBook(book.getBookId());
+            extracted.insertInRedBlackTree(new RedBlackNode(book), extracted.getHeadRedBlackNode());
+        }
+        flushIfFull();
+        return extracted;
+    }
+
+    @Override
+    public synchronized RedBlackMethod splitRedBlackTree(int bookId) {
+        return extractRangeFromRedBlackTree(bookId, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void joinRedBlackTree(RedBlackMethod upperTree) {
+        RedBlackCursor cursor = new RedBlackCursor(upperTree);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            insertInRedBlackTree(new RedBlackNode(cursor.getBook()), null);
+        }
+        upperTree.headRedBlackNode = null;
+    }
+
+    /**
+     * Merges the other catalog in one book at a time. A common book is copied
+     * into the memtable only if the policy may change it.
+     */
+    @Override
+    public synchronized void unionRedBlackTree(RedBlackMethod other, CatalogSetOperations.ConflictPolicy policy) {
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            BookNode book = cursor.getBook();
+            if (findBook(book.getBookId()) == null) {
+                insertInRedBlackTree(new RedBlackNode(book), null);
+            } else if (policy != CatalogSetOperations.ConflictPolicy.KEEP_LEFT) {
+                RedBlackNode current = promote(book.getBookId());
+                replace(current, CatalogSetOperations.resolveConflict(current.getBook(), book, policy));
+                flushIfFull();
+            }
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books that are not in the other catalog one at a time.
+     */
+    @Override
+    public synchronized void intersectRedBlackTree(RedBlackMethod other,
+            CatalogSetOperations.ConflictPolicy policy) {
+        ArrayList<BookNode> books = serachTheRedBlackTreeInRange(Integer.MIN_VALUE, Integer.MAX_VALUE, null,
+                new ArrayList<>());
+        for (BookNode book : books) {
+            RedBlackNode match = other.searchWithInRedBlackTree(other.getHeadRedBlackNode(), book.getBookId());
+            if (match == null) {
+                removeBook(book.getBookId());
+            } else if (policy != CatalogSetOperations.ConflictPolicy.KEEP_LEFT) {
+                RedBlackNode current = promote(book.getBookId());
+                replace(current, CatalogSetOperations.resolveConflict(current.getBook(), match.getBook(), policy));
+            }
+            flushIfFull();
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Removes the books of the other catalog one at a time.
+     */
+    @Override
+    public synchronized void differenceRedBlackTree(RedBlackMethod other) {
+        RedBlackCursor cursor = new RedBlackCursor(other);
+        for (cursor.seek(Integer.MIN_VALUE); cursor.isValid(); cursor.next()) {
+            if (findBook(cursor.getBook().getBookId()) != null) {
+                removeBook(cursor.getBook().getBookId());
+                flushIfFull();
+            }
+        }
+        other.headRedBlackNode = null;
+    }
+
+    /**
+     * Collects the books within the given range, in ascending book ID order, by
+     * merging the memtable with a sequential scan of each segment.
+     */
+    @Override
+    public synchronized ArrayList<BookNode> serachTheRedBlackTreeInRange(int startBookID, int endBookID,
+            RedBlackNode head, ArrayList<BookNode> books) {
+        if (startBookID > endBookID) {
+            return books;
+        }
+        MergedCursor cursor = new MergedCursor();
+        for (cursor.seek(startBookID); cursor.isValid() && cursor.getBook().getBookId() <= endBookID; cursor
+                .next()) {
+            books.add(cursor.getBook());
+        }
+        return books;
+    }
+
+    /**
+     * Collects one page of a range by merging the tiers from the first book of
+     * the page, reading no further than the page needs.
+     */
+    @Override
+    public synchronized ArrayList<BookNode> searchTheRedBlackTreePage(int startBookID, int endBookID,
+            int afterBookID, int maxBooks) {
+        ArrayList<BookNode> books = new ArrayList<>();
+        int firstBookID = afterBookID >= startBookID ? afterBookID + 1 : startBookID;
+        if (afterBookID == Integer.MAX_VALUE || firstBookID > endBookID) {
+            return books;
+        }
+        MergedCursor cursor = new MergedCursor();
+        cursor.seek(firstBookID);
+        while (cursor.isValid() && books.size() < maxBooks && cursor.getBook().getBookId() <= endBookID) {
+            books.add(cursor.getBook());
+            cursor.next();
+        }
+        return books;
+    }
+
+    /**
+     * Finds the next available book with a merged scan of the tiers from the
+     * given book ID.
+     */
+    @Override
+    public synchronized BookNode findNextAvailableBook(int bookID) {
+        MergedCursor cursor = new MergedCursor();
+        for (cursor.seek(bookID); cursor.isValid(); cursor.next()) {
+            if (cursor.getBook().isBookAvailabilityStatus()) {
+                return cursor.getBook();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds a book in any tier.
+     *
+     * @param bookId The book ID.
+     * @return The newest copy of the book, or null if it is not in the catalog.
+     */
+    private BookNode findBook(int bookId) {
+        RedBlackNode node = findRedBlackNode(bookId);
+        return node != null ? node.getBook() : findInSegments(bookId);
+    }
+
+    /**
+     * Finds a book the memtable does not hold in the newest segment holding a
+     * record of its ID.
+     *
+     * @param bookId The book ID.
+     * @return A copy of the book read from its segment, or null if the book is
+     *         deleted or in no segment.
+     */
+    private BookNode findInSegments(int bookId) {
+        if (deletedBookIds.contains(bookId)) {
+            return null;
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            BookSegment.Cursor cursor = segments.get(i).find(bookId);
+            if (cursor != null) {
+                return cursor.isDeleted() ? null : cursor.getBook();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the memtable node of a book about to be modified, copying the book
+     * into the memtable if only a segment holds it.
+     *
+     * @param bookId The book ID.
+     * @return The memtable node of the book, or null if it is not in the
+     *         catalog.
+     */
+    private RedBlackNode promote(int bookId) {
+        RedBlackNode node = findRedBlackNode(bookId);
+        if (node != null) {
+            return node;
+        }
+        BookNode book = findInSegments(bookId);
+        if (book == null) {
+            return null;
+        }
+        node = new RedBlackNode(book);
+        super.insertInRedBlackTree(node, headRedBlackNode);
+        memtableBookCount++;
+        return node;
+    }
+
+    /**
+     * Replaces the book of a memtable node with the winner of a conflict.
+     */
+    private void replace(RedBlackNode node, BookNode book) {
+        node.setBook(book);
+        refreshAvailableBookCountsToRoot(node);
+    }
+
+    /**
+     * Empties the memtable and deletes every segment, after a running
+     * compaction has swapped its output in.
+     */
+    @Override
+    public synchronized void clearCatalog() {
+        while (compacting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        super.clearCatalog();
+        for (BookSegment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        deletedBookIds = new BookIdBitmap();
+        deletedBookCount = 0;
+        memtableBookCount = 0;
+    }
+
+    /**
+     * Removes a book from the memtable, if it is there, and hides it in the
+     * segments.
+     */
+    private void removeBook(int bookId) {
+        if (findRedBlackNode(bookId) != null) {
+            super.deleteFromRedBlackTree(bookId, headRedBlackNode);
+            memtableBookCount--;
+        }
+        markDeleted(bookId);
+    }
+
+    /**
+     * Records the deletion of a book ID if a segment may still hold the book.
+     */
+    private void markDeleted(int bookId) {
+        if (deletedBookIds.contains(bookId)) {
+            return;
+        }
+        for (BookSegment segment : segments) {
+            if (segment.mightContain(bookId)) {
+                deletedBookIds.set(bookId, true);
+                deletedBookCount++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the memtable out as a new segment once it is full, and empties it.
+     * If the segment cannot be written the books stay in the memtable and the
+     * flush is retried after the next change.
+     */
+    private void flushIfFull() {
+        if (memtableBookCount + deletedBookCount < memtableCapacity) {
+            return;
+        }
+        BookSegment.Builder builder;
+        try {
+            builder = new BookSegment.Builder(nextSegmentFile(), 0, memtableBookCount + deletedBookCount);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            RedBlackCursor books = new RedBlackCursor(this);
+            books.seek(Integer.MIN_VALUE);
+            Integer deleted = deletedBookIds.ceiling(Integer.MIN_VALUE);
+            while (books.isValid() || deleted != null) {
+                if (deleted == null || books.isValid() && books.getBook().getBookId() < deleted) {
+                    builder.append(books.getBook().getBookId(), books.getBook());
+                    books.next();
+                } else {
+                    builder.append(deleted, null);
+                    deleted = deleted == Integer.MAX_VALUE ? null : deletedBookIds.ceiling(deleted + 1);
+                }
+            }
+            segments.add(builder.finish());
+        } catch (IOException e) {
+            builder.abandon();
+            return;
+        }
+        headRedBlackNode = null;
+        hotBooks.clear();
+        deletedBookIds = new BookIdBitmap();
+        deletedBookCount = 0;
+        memtableBookCount = 0;
+        scheduleCompaction();
+    }
+
+    /**
+     * Starts merging the newest `TIERED_COMPACTION_FAN_IN` segments of one tier
+     * on the compaction thread, unless a compaction is already running.
+     */
+    private void scheduleCompaction() {
+        if (compacting || compactor.isShutdown()) {
+            return;
+        }
+        for (int first = segments.size() - FAN_IN; first >= 0; first--) {
+            List<BookSegment> run = segments.subList(first, first + FAN_IN);
+            if (isOneTier(run)) {
+                ArrayList<BookSegment> inputs = new ArrayList<>(run);
+                // Deletions only hide books in older segments
+                boolean dropDeleted = first == 0;
+                File file = nextSegmentFile();
+                compacting = true;
+                compactor.execute(() -> compact(inputs, dropDeleted, file));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Body of a compaction: merges the segments without holding the catalog's
+     * monitor, then swaps the merged segment in for them.
+     */
+    private void compact(ArrayList<BookSegment> inputs, boolean dropDeleted, File file) {
+        BookSegment merged = null;
+        try {
+            merged = BookSegment.merge(file, inputs, dropDeleted);
+        } catch (IOException | RuntimeException e) {
+            // The inputs stay in place and are merged again after the next flush
+        }
+        synchronized (this) {
+            compacting = false;
+            notifyAll();
+            if (merged == null) {
+                return;
+            }
+            int first = segments.indexOf(inputs.get(0));
+            segments.subList(first, first + inputs.size()).clear();
+            if (merged.recordCount > 0) {
+                segments.add(first, merged);
+            } else {
+                merged.delete();
+            }
+            for (BookSegment input : inputs) {
+                input.delete();
+            }
+            scheduleCompaction();
+        }
+    }
+
+    private static boolean isOneTier(List<BookSegment> run) {
+        for (BookSegment segment : run) {
+            if (segment.level != run.get(0).level) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private File nextSegmentFile() {
+        return new File(segmentDirectory, "segment_" + nextSegmentNumber++ + ".dat");
+    }
+
+    /**
+     * Deletes the segment files when the process exits. No compaction is
+     * started once the compactor is shut down, and a running one is given time
+     * to finish writing its segment first.
+     */
+    private void deleteSegments() {
+        synchronized (this) {
+            compactor.shutdown();
+        }
+        try {
+            compactor.awaitTermination(LibraryActionConstant.TIERED_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        File[] files = segmentDirectory.listFiles((directory, name) -> name.startsWith("segment_"));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        segmentDirectory.delete();
+    }
+}
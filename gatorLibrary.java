@@ -2,6 +2,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 
 /**
  * The `gatorLibrary` class represents the main entry point for the Gator
@@ -11,37 +13,201 @@ import java.io.FileWriter;
  */
 public class gatorLibrary {
 
-    // FileWriter for writing output to a file
-    static FileWriter writer = null;
+    // Writer for writing output to a file, asynchronous with --async-output
+    static Writer writer = null;
 
     // Instance of the GatorLibServices class for handling library actions
     static GatorLibServices gatorLibServices = null;
 
+    // Replication roles, at most one of them is set
+    static ReplicationLeader replicationLeader = null;
+    static ReplicationFollower replicationFollower = null;
+
+    // Parallel replay of the input file, null for the sequential run
+    static ParallelReplayer parallelReplayer = null;
+
+    // Parallel parsing of the input file, null to parse line by line
+    static ParallelCommandParser parallelCommandParser = null;
+
     /**
      * The main method that initializes the Gator Library Book Management System.
      *
      * @param args Command-line arguments, where the first argument is the input
-     *             file name.
+     *             file name. An optional `--shards=N` argument partitions the
+     *             catalog across N range shards, `--persistent` uses the
+     *             copy-on-write tree (its balancing recolours differently, so
+     *             ColorFlipCount and the rotation counts of TreeStats differ
+     *             from the other catalogs for the same input), `--bplus` uses
+     *             the B+tree with linked leaf pages (ColorFlipCount and the
+     *             rotation counts of TreeStats do not apply to it),
+     *             `--lead=PORT` streams the mutation log to followers,
+     *             `--follow=PORT` serves the input file as reads against a
+     *             replica of the leader,
+     *             `--parallel=N` replays independent commands on N threads and
+     *             `--hold-window=N` gives allotted patrons N ticks to pick up
+     *             their book, `--popularity-half-life=N` halves request
+     *             counts every N ticks and `--async-output` writes the output
+     *             on its own thread, handing over partial output every
+     *             `--flush-interval=MS` milliseconds. `--parse-threads=N`
+     *             parses the input file on N threads ahead of the executing
+     *             commands, for very large files. Further input file names
+     *             run as independent branches, each with its own catalog and
+     *             output file, on `--branch-threads=N` threads (one per core
+     *             by default); replication and the parallel modes apply to a
+     *             single input file only. `--change-log` writes every change
+     *             to the catalog to a change log file next to the output file.
+     *             `--tiered` keeps the catalog in a memtable flushed to sorted
+     *             segment files once it holds `--memtable-books=N` books, for
+     *             catalogs larger than the heap; its ColorFlipCount and
+     *             TreeStats describe the memtable only. At most one of
+     *             `--shards`, `--persistent`, `--bplus` and `--tiered`, and at
+     *             most one of `--parallel` and `--parse-threads`, may be given;
+     *             the run is refused otherwise.
      */
     public static void main(String[] args) {
 
         try {
             String filename = "";
+            ArrayList<String> inputFileNames = new ArrayList<>();
             if (args.length != 0) {
                 filename = args[0];
+                inputFileNames.add(filename);
+            }
+            int shardCount = 1;
+            int leadPort = -1;
+            int followPort = -1;
+            int replayThreads = 1;
+            int parseThreads = 1;
+            int branchThreads = Runtime.getRuntime().availableProcessors();
+            long holdWindow = LibraryActionConstant.HOLD_WINDOW_TICKS;
+            long popularityHalfLife = LibraryActionConstant.POPULARITY_HALF_LIFE_TICKS;
+            boolean persistent = false;
+            boolean bplus = false;
+            boolean tiered = false;
+            int memtableBooks = LibraryActionConstant.TIERED_MEMTABLE_BOOKS;
+            boolean asyncOutput = false;
+            boolean changeLog = false;
+            long flushInterval = LibraryActionConstant.ASYNC_OUTPUT_FLUSH_INTERVAL_MS;
+            for (int i = 1; i < args.length; i++) {
+                if (LibraryActionConstant.PERSISTENT_OPTION.equals(args[i])) {
+                    persistent = true;
+                } else if (LibraryActionConstant.BPLUS_OPTION.equals(args[i])) {
+                    bplus = true;
+                } else if (LibraryActionConstant.TIERED_OPTION.equals(args[i])) {
+                    tiered = true;
+                } else if (args[i].startsWith(LibraryActionConstant.MEMTABLE_BOOKS_OPTION)) {
+                    memtableBooks = Integer.parseInt(
+                            args[i].substring(LibraryActionConstant.MEMTABLE_BOOKS_OPTION.length()));
+                } else if (LibraryActionConstant.ASYNC_OUTPUT_OPTION.equals(args[i])) {
+                    asyncOutput = true;
+                } else if (LibraryActionConstant.CHANGE_LOG_OPTION.equals(args[i])) {
+                    changeLog = true;
+                } else if (args[i].startsWith(LibraryActionConstant.FLUSH_INTERVAL_OPTION)) {
+                    flushInterval = Long.parseLong(
+                            args[i].substring(LibraryActionConstant.FLUSH_INTERVAL_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.SHARDS_OPTION)) {
+                    shardCount = Integer.parseInt(args[i].substring(LibraryActionConstant.SHARDS_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.LEAD_OPTION)) {
+                    leadPort = Integer.parseInt(args[i].substring(LibraryActionConstant.LEAD_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.FOLLOW_OPTION)) {
+                    followPort = Integer.parseInt(args[i].substring(LibraryActionConstant.FOLLOW_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.PARALLEL_OPTION)) {
+                    replayThreads = Integer.parseInt(args[i].substring(LibraryActionConstant.PARALLEL_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.PARSE_THREADS_OPTION)) {
+                    parseThreads = Integer.parseInt(
+                            args[i].substring(LibraryActionConstant.PARSE_THREADS_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.BRANCH_THREADS_OPTION)) {
+                    branchThreads = Integer.parseInt(
+                            args[i].substring(LibraryActionConstant.BRANCH_THREADS_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.HOLD_WINDOW_OPTION)) {
+                    holdWindow = Long.parseLong(args[i].substring(LibraryActionConstant.HOLD_WINDOW_OPTION.length()));
+                } else if (args[i].startsWith(LibraryActionConstant.POPULARITY_HALF_LIFE_OPTION)) {
+                    popularityHalfLife = Long.parseLong(
+                            args[i].substring(LibraryActionConstant.POPULARITY_HALF_LIFE_OPTION.length()));
+                } else if (!args[i].startsWith("--")) {
+                    inputFileNames.add(args[i]);
+                }
+            }
+            int catalogOptionCount = (shardCount > 1 ? 1 : 0) + (persistent ? 1 : 0) + (bplus ? 1 : 0)
+                    + (tiered ? 1 : 0);
+            if (catalogOptionCount > 1) {
+                System.err.println(LibraryActionConstant.CONFLICTING_CATALOG_OPTIONS_MESSAGE);
+                return;
+            }
+            if (replayThreads > 1 && parseThreads > 1) {
+                System.err.println(LibraryActionConstant.CONFLICTING_REPLAY_OPTIONS_MESSAGE);
+                return;
+            }
+            MultiCatalogRunner.CatalogFactory catalogs = catalogFactory(shardCount, persistent, bplus, tiered,
+                    memtableBooks, asyncOutput, flushInterval, holdWindow, popularityHalfLife, changeLog);
+            if (inputFileNames.size() > 1) {
+                MultiCatalogRunner runner = new MultiCatalogRunner(catalogs,
+                        Math.min(branchThreads, inputFileNames.size()));
+                runner.runAll(inputFileNames);
+                runner.shutdown();
+                return;
             }
-            RedBlackMethod rb = new RedBlackMethod();
             File inputFile = new File(filename);
-            String outputFileName = filename.split("\\.", 2)[0] + "_" + "output_file.txt";
-            writer = new FileWriter(outputFileName);
-
-            gatorLibServices = new GatorLibServices(rb, writer);
+            gatorLibServices = catalogs.open(filename);
+            writer = gatorLibServices.writer;
+            RedBlackMethod rb = gatorLibServices.rb;
+            if (leadPort > 0) {
+                replicationLeader = new ReplicationLeader(rb, gatorLibServices, leadPort);
+            } else if (followPort > 0) {
+                replicationFollower = new ReplicationFollower(rb, gatorLibServices, followPort);
+                replicationFollower.awaitInitialSync(LibraryActionConstant.REPLICATION_SYNC_TIMEOUT_MS);
+            } else if (replayThreads > 1) {
+                // Replicated runs stay sequential, the log order is the command order
+                parallelReplayer = new ParallelReplayer(gatorLibServices, replayThreads);
+            } else if (parseThreads > 1) {
+                parallelCommandParser = new ParallelCommandParser(gatorLibServices, parseThreads);
+            }
             parsingInputFile(inputFile);
         } catch (Exception e) {
 
         }
     }
 
+    /**
+     * Builds the factory of the catalogs selected by the command-line options,
+     * each writing to the output file named after its input file and, with
+     * `changeLog`, its changes to the change log file named after it. A tiered
+     * catalog writes its segments to a directory named after the input file.
+     */
+    static MultiCatalogRunner.CatalogFactory catalogFactory(int shardCount, boolean persistent, boolean bplus,
+            boolean tiered, int memtableBooks, boolean asyncOutput, long flushInterval, long holdWindow,
+            long popularityHalfLife, boolean changeLog) {
+        return inputFileName -> {
+            String baseName = inputFileName.split("\\.", 2)[0];
+            RedBlackMethod rb;
+            if (shardCount > 1) {
+                rb = new ShardedRedBlackMethod(shardCount);
+            } else if (persistent) {
+                rb = new PersistentRedBlackMethod();
+            } else if (bplus) {
+                rb = new BPlusTreeMethod();
+            } else if (tiered) {
+                rb = new TieredRedBlackMethod(new File(baseName + "_" + "segments"), memtableBooks);
+            } else {
+                rb = new RedBlackMethod();
+            }
+            String outputFileName = baseName + "_" + "output_file.txt";
+            Writer output = new FileWriter(outputFileName);
+            if (asyncOutput) {
+                output = new AsyncOutputWriter(output, flushInterval);
+            }
+
+            GatorLibServices services = new GatorLibServices(rb, output);
+            services.holdQueue = new HoldExpiryQueue(holdWindow);
+            services.popularity = new PopularityTracker(popularityHalfLife);
+            if (changeLog) {
+                services.changeStream = new CatalogChangeStream(LibraryActionConstant.CDC_RING_CAPACITY);
+                services.changeStream.startFileSink(baseName + "_" + "change_log.txt");
+            }
+            return services;
+        };
+    }
+
     /**
      * Reads the input file and performs the corresponding library actions based on
      * the instructions provided.
@@ -52,12 +218,23 @@ public class gatorLibrary {
         try {
             BufferedReader reader = new BufferedReader(new FileReader(inputFile));
             String line;
-            while ((line = reader.readLine()) != null) {
+            if (parallelReplayer != null) {
+                parallelReplayer.replay(reader);
+                parallelReplayer.shutdown();
+            } else if (parallelCommandParser != null) {
+                parallelCommandParser.replay(inputFile);
+                parallelCommandParser.shutdown();
+            }
+            while (parallelReplayer == null && parallelCommandParser == null && (line = reader.readLine()) != null) {
                 if (!line.isBlank()) {
                     String libraryActionToPerform = line.substring(0, line.indexOf('('));
                     if (LibraryActionConstant.QUIT.equals(libraryActionToPerform.trim())) {
                         gatorLibServices.performQuitAction();
                         break;
+                    } else if (replicationLeader != null) {
+                        replicationLeader.applyAndPublish(libraryActionToPerform.trim(), line);
+                    } else if (replicationFollower != null) {
+                        replicationFollower.serveRead(libraryActionToPerform.trim(), line);
                     } else {
                         libraryActionPerformer(libraryActionToPerform.trim(), line);
                     }
@@ -66,6 +243,15 @@ public class gatorLibrary {
 
             reader.close();
             writer.close();
+            if (gatorLibServices.changeStream != null) {
+                gatorLibServices.changeStream.close();
+            }
+            if (replicationLeader != null) {
+                replicationLeader.shutdown();
+            }
+            if (replicationFollower != null) {
+                replicationFollower.shutdown();
+            }
         } catch (Exception e) {
 
         }
@@ -80,95 +266,154 @@ public class gatorLibrary {
      * @param dataString    The data associated with the library action.
      */
     public static void libraryActionPerformer(String libraryAction, String dataString) {
-        switch (libraryAction) {
-            // Handle the PRINT_BOOK action
-            case LibraryActionConstant.PRINT_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                gatorLibServices.performPrintBookAction(Integer.parseInt(inputData.trim()));
+        libraryActionPerformer(gatorLibServices, libraryAction, dataString);
+    }
 
-            }
+    /**
+     * Performs the specified library action against the given library services,
+     * so catalogs other than the main one (for example replicas) can be driven by
+     * the same command parsing.
+     *
+     * @param services      The library services executing the action.
+     * @param libraryAction The type of library action to perform.
+     * @param dataString    The data associated with the library action.
+     */
+    public static void libraryActionPerformer(GatorLibServices services, String libraryAction, String dataString) {
+        performCommand(services, LibraryCommand.parse(libraryAction, dataString));
+    }
+
+    /**
+     * Performs an already parsed command against the given library services.
+     *
+     * @param services The library services executing the action.
+     * @param command  The parsed command.
+     * @throws RuntimeException The failure parsing the command, if its line could
+     *                          not be parsed.
+     */
+    public static void performCommand(GatorLibServices services, LibraryCommand command) {
+        if (command.parseFailure != null) {
+            throw command.parseFailure;
+        }
+        long[] arguments = command.arguments;
+        switch (command.libraryAction) {
+            // Handle the PRINT_BOOK action
+            case LibraryActionConstant.PRINT_BOOK:
+                services.performPrintBookAction((int) arguments[0]);
                 break;
 
             // Handle the PRINT_BOOKS action
-            case LibraryActionConstant.PRINT_BOOKS: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                String parseString[] = inputData.split(",", 2);
-                gatorLibServices.performPrintBooksAction(Integer.parseInt(parseString[0].trim()),
-                        Integer.parseInt(parseString[1].trim()));
+            case LibraryActionConstant.PRINT_BOOKS:
+                if (arguments.length == 4) {
+                    // Paginated form: PrintBooks(lo, hi, limit, afterId)
+                    services.performPrintBooksPageAction((int) arguments[0], (int) arguments[1],
+                            (int) arguments[2], (int) arguments[3]);
+                } else {
+                    services.performPrintBooksAction((int) arguments[0], (int) arguments[1]);
+                }
+                break;
 
+            // Handle the PRINT_BOOKS_BY_IDS action
+            case LibraryActionConstant.PRINT_BOOKS_BY_IDS: {
+                int[] bookIds = new int[arguments.length];
+                for (int i = 0; i < bookIds.length; i++) {
+                    bookIds[i] = (int) arguments[i];
+                }
+                services.performPrintBooksByIdsAction(bookIds);
             }
                 break;
 
             // Handle the INSERT_BOOK action
-            case LibraryActionConstant.INSERT_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataString.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                String parseString[] = inputData.split(",", 4);
+            case LibraryActionConstant.INSERT_BOOK:
+                services.performInsertBookAction(new BookNode((int) arguments[0], command.bookName,
+                        command.bookAuthorName, command.bookAvailabilityStatus));
+                break;
 
-                BookNode newBook = new BookNode(Integer.parseInt(parseString[0].trim()), parseString[1].trim(),
-                        parseString[2].trim(),
-                        parseString[3].trim().equalsIgnoreCase("\"Yes\"") ? true : false);
+            // Handle the BORROW_BOOK action
+            case LibraryActionConstant.BORROW_BOOK:
+                services.performBorrowBookAction((int) arguments[0], (int) arguments[1], (int) arguments[2]);
+                break;
 
-                gatorLibServices.performInsertBookAction(newBook);
-            }
+            // Handle the RETURN_BOOK action
+            case LibraryActionConstant.RETURN_BOOK:
+                services.performReturnBookAction((int) arguments[0], (int) arguments[1]);
                 break;
-            // Handle the BORROW_BOOK action
-            case LibraryActionConstant.BORROW_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                String parseString[] = inputData.split(",", 3);
 
-                gatorLibServices.performBorrowBookAction(
-                        Integer.parseInt(parseString[0].trim()),
-                        Integer.parseInt(parseString[1].trim()),
-                        Integer.parseInt(parseString[2].trim()));
+            // Handle the DELETE_BOOK action
+            case LibraryActionConstant.DELETE_BOOK:
+                services.performDeleteBookAction((int) arguments[0]);
+                break;
 
-            }
+            // Handle the DELETE_BOOKS action
+            case LibraryActionConstant.DELETE_BOOKS:
+                services.performDeleteBooksAction((int) arguments[0], (int) arguments[1]);
+                break;
 
+            // Handle the EXTRACT_BOOKS action
+            case LibraryActionConstant.EXTRACT_BOOKS:
+                services.performExtractBooksAction((int) arguments[0], (int) arguments[1]);
                 break;
-            // Handle the RETURN_BOOK action
-            case LibraryActionConstant.RETURN_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                String parseString[] = inputData.split(",", 2);
-
-                gatorLibServices.performReturnBookAction(Integer.parseInt(parseString[0].trim()),
-                        Integer.parseInt(parseString[1].trim()));
-            }
+
+            // Handle the FIND_CLOSEST_BOOK action
+            case LibraryActionConstant.FIND_CLOSEST_BOOK:
+                services.performFindClosestBookSearch((int) arguments[0]);
                 break;
 
-            // Handle the DELETE_BOOK action
-            case LibraryActionConstant.DELETE_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                gatorLibServices.performDeleteBookAction(Integer.parseInt(inputData.trim()));
-            }
+            // Handle the COUNT_AVAILABLE action
+            case LibraryActionConstant.COUNT_AVAILABLE:
+                services.performCountAvailableAction((int) arguments[0], (int) arguments[1]);
                 break;
 
-            // Handle the FIND_CLOSEST_BOOK action
-            case LibraryActionConstant.FIND_CLOSEST_BOOK: {
-                String dataStringTrimmed = dataString.trim();
-                String inputData = dataStringTrimmed.substring(dataStringTrimmed.indexOf('(') + 1,
-                        dataStringTrimmed.length() - 1);
-                gatorLibServices.performFindClosestBookSearch(Integer.parseInt(inputData.trim()));
-            }
+            // Handle the NEXT_AVAILABLE action
+            case LibraryActionConstant.NEXT_AVAILABLE:
+                services.performNextAvailableAction((int) arguments[0]);
                 break;
-            case LibraryActionConstant.FIND_COLOUR_FLIP_COUNT: {
-                gatorLibServices.performColourFlipCountAction();
-            }
+
+            case LibraryActionConstant.FIND_COLOUR_FLIP_COUNT:
+                services.performColourFlipCountAction();
+                break;
+
+            // Handle the UNION_CATALOG, INTERSECT_CATALOG and DIFFERENCE_CATALOG actions
+            case LibraryActionConstant.UNION_CATALOG:
+            case LibraryActionConstant.INTERSECT_CATALOG:
+            case LibraryActionConstant.DIFFERENCE_CATALOG:
+                services.performCatalogSetOperationAction(command.libraryAction, command.fileName, command.policy);
+                break;
+
+            // Handle the TOP_BOOKS action
+            case LibraryActionConstant.TOP_BOOKS:
+                services.performTopBooksAction((int) arguments[0]);
+                break;
+
+            // Handle the ADVANCE_CLOCK action
+            case LibraryActionConstant.ADVANCE_CLOCK:
+                services.performAdvanceClockAction(arguments[0]);
+                break;
+
+            // Handle the PICK_UP_BOOK action
+            case LibraryActionConstant.PICK_UP_BOOK:
+                services.performPickUpBookAction((int) arguments[0], (int) arguments[1]);
                 break;
+
+            // Handle the OVERDUE action
+            case LibraryActionConstant.OVERDUE:
+                services.performOverdueAction(arguments[0]);
+                break;
+
+            case LibraryActionConstant.CACHE_STATS:
+                services.performCacheStatsAction();
+                break;
+
+            case LibraryActionConstant.TREE_STATS:
+                services.performTreeStatsAction();
+                break;
+
+            case LibraryActionConstant.FLUSH:
+                services.performFlushAction();
+                break;
+
             default:
                 // Handle unknown action
                 break;
         }
-        return;
     }
 }
\ No newline at end of file
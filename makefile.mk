@@ -25,7 +25,7 @@ RM = del
 	$(JC) $(JCFLAGS) $<
 
 # Use a wildcard to find all Java source files in the current directory
-SRCS = gatorLibrary.java BookNode.java BookPriorityQueue.java LibraryActionConstant.java RedBlackMethod.java RedBlackNode.java BookWaitList.java GatorLibServices.java NilNode.java
+SRCS = gatorLibrary.java BookNode.java BookPriorityQueue.java LibraryActionConstant.java RedBlackMethod.java RedBlackNode.java BookWaitList.java GatorLibServices.java NilNode.java ShardedRedBlackMethod.java ReplicationLeader.java ReplicationFollower.java PersistentRedBlackMethod.java RedBlackCursor.java BookRenderCache.java RangeQueryCache.java CatalogSetOperations.java ParallelReplayer.java LoanTimingWheel.java LoanTracker.java HoldExpiryQueue.java PopularityTracker.java RedBlackTreeStats.java BPlusTreeMethod.java BookIdBitmap.java LibraryActionResult.java AsyncOutputWriter.java LibraryCommand.java ParallelCommandParser.java MultiCatalogRunner.java CatalogChangeStream.java HotBookCache.java BookSegment.java TieredRedBlackMethod.java
 
 # Convert Java source files to class files
 CLASSES = $(SRCS:.java=.class)